@@ -0,0 +1,62 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rental.ReservationException;
+
+/**
+ * Booking changes the company, so every thread books on a company of its own
+ * that is rebuilt before each iteration. Once a period is fully booked its
+ * quotes fail, which is measured as well.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingBenchmark {
+
+    @State(Scope.Thread)
+    public static class Booking {
+
+        @Param({"100", "1000"})
+        public int cars;
+        @Param({"5"})
+        public int types;
+        @Param({"10"})
+        public int reservationsPerCar;
+
+        FleetState fleet;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            fleet = new FleetState();
+            fleet.cars = cars;
+            fleet.types = types;
+            fleet.reservationsPerCar = reservationsPerCar;
+            fleet.setUp();
+        }
+    }
+
+    @Benchmark
+    public void confirmQuote(Booking booking, Blackhole blackhole) {
+        FleetState fleet = booking.fleet;
+        try {
+            blackhole.consume(fleet.company.confirmQuote(fleet.quotes[fleet.next()]));
+        } catch (ReservationException e) {
+            blackhole.consume(e);
+        }
+    }
+}
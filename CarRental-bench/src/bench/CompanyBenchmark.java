@@ -0,0 +1,80 @@
+package bench;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rental.CarType;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationException;
+
+/**
+ * The read paths of the rental domain: availability, quoting and the
+ * reservations of a renter. The company is shared by all threads and none of
+ * these paths change it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompanyBenchmark {
+
+    @Benchmark
+    public boolean carIsAvailable(FleetState fleet) {
+        int i = fleet.next();
+        return fleet.car.isAvailable(fleet.starts[i], fleet.ends[i]);
+    }
+
+    @Benchmark
+    public Set<CarType> getAvailableCarTypes(FleetState fleet) {
+        int i = fleet.next();
+        return fleet.company.getAvailableCarTypes(fleet.starts[i], fleet.ends[i]);
+    }
+
+    @Benchmark
+    public boolean isAvailable(FleetState fleet) {
+        int i = fleet.next();
+        return fleet.company.isAvailable(fleet.carTypes[i], fleet.starts[i], fleet.ends[i]);
+    }
+
+    @Benchmark
+    public void createQuote(FleetState fleet, Blackhole blackhole) {
+        int i = fleet.next();
+        try {
+            blackhole.consume(fleet.company.createQuote(fleet.constraints[i], fleet.renters[i % FleetState.RENTERS]));
+        } catch (ReservationException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public Set<Reservation> getReservationsBy(FleetState fleet) {
+        return fleet.company.getReservationsBy(fleet.renters[fleet.next() % FleetState.RENTERS]);
+    }
+
+    @Benchmark
+    public void quoteEqualsHashCode(FleetState fleet, Blackhole blackhole) {
+        int i = fleet.next();
+        Quote quote = fleet.quotes[i];
+        Quote other = fleet.quotes[(i + 1) & (FleetState.PERIODS - 1)];
+        blackhole.consume(quote.hashCode());
+        blackhole.consume(quote.equals(other));
+    }
+
+    @Benchmark
+    public void reservationEqualsHashCode(FleetState fleet, Blackhole blackhole) {
+        int i = fleet.next();
+        Reservation reservation = new Reservation(fleet.quotes[i], 0);
+        Reservation same = new Reservation(fleet.quotes[i], 0);
+        blackhole.consume(reservation.hashCode());
+        blackhole.consume(reservation.equals(same));
+    }
+}
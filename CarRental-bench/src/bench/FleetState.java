@@ -0,0 +1,118 @@
+package bench;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import rental.Car;
+import rental.CarRentalCompany;
+import rental.CarType;
+import rental.EpochDays;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationConstraints;
+
+/**
+ * A synthetic company, built in memory without a database.
+ *
+ * Every car gets its reservations back to back with a free day in between,
+ * starting at {@link #FIRST_DAY}. The probed periods are spread over that
+ * history, so some of them find a free car and some do not.
+ */
+@State(Scope.Benchmark)
+public class FleetState {
+
+    // 1 January 2015
+    static final int FIRST_DAY = 16436;
+    static final int PERIODS = 1024;
+    static final int RENTERS = 100;
+    // keeps the start-up line of the company quiet, the booking journal is
+    // not opened outside of the server
+    private static final Logger rentalLogger = Logger.getLogger(CarRentalCompany.class.getName());
+
+    @Param({"100", "1000"})
+    public int cars;
+    @Param({"5"})
+    public int types;
+    @Param({"10", "100"})
+    public int reservationsPerCar;
+
+    public CarRentalCompany company;
+    public Car car;
+    public Date[] starts;
+    public Date[] ends;
+    public String[] carTypes;
+    public String[] renters;
+    public ReservationConstraints[] constraints;
+    public Quote[] quotes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rentalLogger.setLevel(Level.WARNING);
+        company = createCompany(cars, types, reservationsPerCar);
+        car = company.getCars(typeName(0)).iterator().next();
+        renters = new String[RENTERS];
+        for (int i = 0; i < RENTERS; i++) {
+            renters[i] = renterName(i);
+        }
+        int historyDays = reservationsPerCar * 4;
+        starts = new Date[PERIODS];
+        ends = new Date[PERIODS];
+        carTypes = new String[PERIODS];
+        constraints = new ReservationConstraints[PERIODS];
+        quotes = new Quote[PERIODS];
+        Random random = new Random(42);
+        for (int i = 0; i < PERIODS; i++) {
+            int startDay = FIRST_DAY + random.nextInt(historyDays + 30);
+            starts[i] = EpochDays.toDate(startDay);
+            ends[i] = EpochDays.toDate(startDay + 1 + random.nextInt(3));
+            carTypes[i] = typeName(random.nextInt(types));
+            constraints[i] = new ReservationConstraints(starts[i], ends[i], carTypes[i]);
+            quotes[i] = company.priceQuote(constraints[i], renters[i % RENTERS]);
+        }
+        // build the lazy indexes outside of the measurements
+        company.getAvailableCarTypes(starts[0], ends[0]);
+    }
+
+    // not thread safe, threads may probe the same period, which is fine
+    public int next() {
+        return next++ & (PERIODS - 1);
+    }
+
+    static CarRentalCompany createCompany(int cars, int types, int reservationsPerCar) {
+        CarRentalCompany company = new CarRentalCompany("Bench");
+        CarType[] carTypes = new CarType[types];
+        for (int t = 0; t < types; t++) {
+            carTypes[t] = new CarType(typeName(t), 2 + t, 100 + 50 * t, 40 + 10 * t, t % 2 == 0);
+        }
+        int renter = 0;
+        for (int c = 0; c < cars; c++) {
+            Car car = new Car(carTypes[c % types]);
+            company.addCar(car);
+            // a reservation of 1 to 3 days, then a free day
+            int day = FIRST_DAY + c % 4;
+            for (int r = 0; r < reservationsPerCar; r++) {
+                int length = 1 + (c + r) % 3;
+                Quote quote = new Quote(renterName(renter++ % RENTERS), day, day + length,
+                        company.getName(), car.getType().getName(),
+                        length * car.getType().getRentalPricePerDay());
+                car.addReservation(new Reservation(quote, car.getId()));
+                day += length + 1;
+            }
+        }
+        return company;
+    }
+
+    static String typeName(int type) {
+        return "Type" + type;
+    }
+
+    static String renterName(int renter) {
+        return "Renter" + renter;
+    }
+}
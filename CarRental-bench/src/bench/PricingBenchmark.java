@@ -0,0 +1,83 @@
+package bench;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rental.FlatPricing;
+import rental.PricingStrategy;
+import rental.RateTablePricing;
+
+/**
+ * Pricing a batch of rentals one by one and in a single pass, with the flat
+ * rate and with rate tables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Rentals {
+
+        @Param({"flat", "table"})
+        public String pricing;
+        @Param({"64"})
+        public int count;
+
+        PricingStrategy strategy;
+        double[] rates;
+        int[] startDays;
+        int[] endDays;
+        double[] prices;
+
+        @Setup
+        public void setUp() {
+            if ("flat".equals(pricing)) {
+                strategy = new FlatPricing();
+            } else {
+                Properties tables = new Properties();
+                tables.setProperty("season", "1,1,1,1.1,1.1,1.2,1.4,1.4,1.2,1,1,1.2");
+                tables.setProperty("weekday", "1,1,1,1,1,1.15,1.15");
+                tables.setProperty("length", "7:0.9,14:0.85,28:0.8");
+                strategy = RateTablePricing.load(tables);
+            }
+            Random random = new Random(42);
+            rates = new double[count];
+            startDays = new int[count];
+            endDays = new int[count];
+            prices = new double[count];
+            for (int i = 0; i < count; i++) {
+                rates[i] = 20 + random.nextInt(200);
+                startDays[i] = FleetState.FIRST_DAY + random.nextInt(365);
+                endDays[i] = startDays[i] + 1 + random.nextInt(30);
+            }
+        }
+    }
+
+    @Benchmark
+    public void priceEach(Rentals rentals, Blackhole blackhole) {
+        for (int i = 0; i < rentals.count; i++) {
+            blackhole.consume(rentals.strategy.price(rentals.rates[i], rentals.startDays[i], rentals.endDays[i]));
+        }
+    }
+
+    @Benchmark
+    public double[] priceAll(Rentals rentals) {
+        rentals.strategy.priceAll(rentals.rates, rentals.startDays, rentals.endDays, rentals.prices, rentals.count);
+        return rentals.prices;
+    }
+}
@@ -0,0 +1,173 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rental.CarType;
+import rental.EpochDays;
+import rental.Quote;
+import rental.Reservation;
+
+/**
+ * Serialized size and (de)serialization time of large results, as returned
+ * by getReservationsBy and getCarTypes. The compact format of the rental
+ * classes is compared with default serialization of the same fields, which
+ * is what the rental classes used before. The sizes are printed at setup.
+ *
+ * Every row gets strings of its own, as rows loaded from a database do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    @Param({"compact", "default"})
+    public String format;
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private List<Serializable> reservations;
+    private List<Serializable> carTypes;
+    private byte[] serializedReservations;
+    private byte[] serializedCarTypes;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        reservations = new ArrayList<Serializable>(rows);
+        carTypes = new ArrayList<Serializable>(rows);
+        for (int i = 0; i < rows; i++) {
+            String renter = "Renter" + random.nextInt(100);
+            String company = random.nextBoolean() ? "Hertz" : "Dockx";
+            String carType = FleetState.typeName(random.nextInt(10));
+            int startDay = FleetState.FIRST_DAY + random.nextInt(1000);
+            Date start = EpochDays.toDate(startDay);
+            Date end = EpochDays.toDate(startDay + 1 + random.nextInt(3));
+            double price = 50 + random.nextInt(100);
+            if (format.equals("compact")) {
+                Reservation reservation = new Reservation(new Quote(new String(renter), start, end,
+                        new String(company), new String(carType), price), i);
+                reservation.setId(i);
+                reservations.add(reservation);
+                carTypes.add(new CarType(new String(carType), 4, 350, price, false));
+            } else {
+                reservations.add(new DefaultReservation(new String(renter), start, end,
+                        new String(company), new String(carType), price, i, i));
+                carTypes.add(new DefaultCarType(new String(carType), 4, 350, price, false, i));
+            }
+        }
+        serializedReservations = serialize(reservations);
+        serializedCarTypes = serialize(carTypes);
+        System.out.println(String.format("%n%s format, %d rows: reservations %d bytes, car types %d bytes",
+                format, rows, serializedReservations.length, serializedCarTypes.length));
+    }
+
+    @Benchmark
+    public byte[] serializeReservations() throws IOException {
+        return serialize(reservations);
+    }
+
+    @Benchmark
+    public Object deserializeReservations() throws Exception {
+        return deserialize(serializedReservations);
+    }
+
+    @Benchmark
+    public byte[] serializeCarTypes() throws IOException {
+        return serialize(carTypes);
+    }
+
+    @Benchmark
+    public Object deserializeCarTypes() throws Exception {
+        return deserialize(serializedCarTypes);
+    }
+
+    private static byte[] serialize(List<Serializable> list) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(list);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The fields of Reservation, in default serialized form.
+     */
+    static class DefaultReservation implements Serializable {
+
+        private Date startDate;
+        private Date endDate;
+        private String carRenter;
+        private String rentalCompany;
+        private String carType;
+        private double rentalPrice;
+        private int carId;
+        private int id;
+
+        DefaultReservation(String carRenter, Date start, Date end, String rentalCompany, String carType,
+                double rentalPrice, int carId, int id) {
+            this.carRenter = carRenter;
+            this.startDate = start;
+            this.endDate = end;
+            this.rentalCompany = rentalCompany;
+            this.carType = carType;
+            this.rentalPrice = rentalPrice;
+            this.carId = carId;
+            this.id = id;
+        }
+    }
+
+    /**
+     * The fields of CarType, in default serialized form.
+     */
+    static class DefaultCarType implements Serializable {
+
+        private String name;
+        private int nbOfSeats;
+        private boolean smokingAllowed;
+        private double rentalPricePerDay;
+        private float trunkSpace;
+        private int id;
+
+        DefaultCarType(String name, int nbOfSeats, float trunkSpace, double rentalPricePerDay,
+                boolean smokingAllowed, int id) {
+            this.name = name;
+            this.nbOfSeats = nbOfSeats;
+            this.trunkSpace = trunkSpace;
+            this.rentalPricePerDay = rentalPricePerDay;
+            this.smokingAllowed = smokingAllowed;
+            this.id = id;
+        }
+    }
+}
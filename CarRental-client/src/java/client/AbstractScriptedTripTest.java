@@ -91,6 +91,17 @@ public abstract class AbstractScriptedTripTest<ReservationSession, ManagerSessio
      */
     protected abstract void confirmQuotes(ReservationSession session, String name) throws Exception;
 
+    /**
+     * End a reservation session that is not used any more. The sessions of
+     * the script live as long as the run, the trips of runLoad end theirs.
+     *
+     * @param session the session to end
+     *
+     * @throws Exception if things go wrong, throw exception
+     */
+    protected void endReservationSession(ReservationSession session) throws Exception {
+    }
+
     /**
      * Get the number of reservations made by the given renter (across whole
      * rental agency).
@@ -138,8 +149,13 @@ public abstract class AbstractScriptedTripTest<ReservationSession, ManagerSessio
      */
     protected abstract CarType getMostPopularCarTypeIn(ManagerSession ms, String carRentalCompanyName) throws Exception;
     
-    //date format to parse dates from file
-    private static final DateFormat datef = new SimpleDateFormat("d/M/y");
+    //date format to parse dates from file, one per thread as it is not thread safe
+    private static final ThreadLocal<DateFormat> datef = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("d/M/y");
+        }
+    };
     //name of the file containing the test script 
     private String scriptFile;
     //open sessions
@@ -184,12 +200,12 @@ public abstract class AbstractScriptedTripTest<ReservationSession, ManagerSessio
                     throw new IllegalArgumentException("script broken: no session" + line + " on line " + lnr);
                 }
                 if (cmd.contains("A")) {
-                    Date start = datef.parse(scriptReader.nextToken());
-                    Date end = datef.parse(scriptReader.nextToken());
+                    Date start = datef.get().parse(scriptReader.nextToken());
+                    Date end = datef.get().parse(scriptReader.nextToken());
                     checkForAvailableCarTypes(session, start, end);
                 } else if (cmd.contains("B")) {
-                    Date start = datef.parse(scriptReader.nextToken());
-                    Date end = datef.parse(scriptReader.nextToken());
+                    Date start = datef.get().parse(scriptReader.nextToken());
+                    Date end = datef.get().parse(scriptReader.nextToken());
                     String type = scriptReader.nextToken();
                     String agent = scriptReader.nextToken();
                     Exception be = null;
@@ -229,6 +245,20 @@ public abstract class AbstractScriptedTripTest<ReservationSession, ManagerSessio
         in.close();
     }
 
+    /**
+     * Make trips drawn from the model from many threads and report the
+     * latency per command.
+     *
+     * @param model the trips to make
+     * @param threads number of client threads
+     * @param tripsPerSecond target rate over all threads, 0 for as fast as
+     * possible
+     * @param seconds duration of the run
+     */
+    public void runLoad(TripModel model, int threads, double tripsPerSecond, long seconds) throws InterruptedException {
+        new LoadGenerator<ReservationSession, ManagerSession>(this, model).run(threads, tripsPerSecond, seconds);
+    }
+
     private void check(String name, StringTokenizer scriptReader) throws Exception {
         ManagerSession rental = getNewManagerSession(name, name);
         while (scriptReader.hasMoreTokens()) {
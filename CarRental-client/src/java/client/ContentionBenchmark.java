@@ -0,0 +1,119 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.naming.InitialContext;
+import rental.ReservationConstraints;
+import session.CarRentalSessionRemote;
+
+/*
+ * Booking contention benchmark. Clients book one car at a time at the same
+ * company, all in the same small window of days, so they compete for the same
+ * cars. Runs a fixed time per number of client threads and prints how many
+ * bookings per second got through and how many failed. Every round books a
+ * window of its own, so it does not start on the cars booked by the last.
+ * Once a window is booked full, bookings fail fast: keep rounds short.
+ *
+ * Expects the data of Main to be loaded. Run with the application client
+ * container, e.g. appclient -client CarRental-client.jar -mainclass client.ContentionBenchmark
+ *
+ * Arguments: [company] [seconds per round] [max threads]
+ */
+public class ContentionBenchmark {
+
+    private static final String[] CAR_TYPES = {"Compact", "Economy", "Standard", "Premium", "MPV"};
+    private static final int WINDOW_DAYS = 7;
+    // rentals last up to 3 days, so windows this far apart never overlap
+    private static final int ROUND_DAYS = WINDOW_DAYS + 3;
+
+    private final String company;
+    private final long roundMillis;
+
+    public ContentionBenchmark(String company, long roundMillis) {
+        this.company = company;
+        this.roundMillis = roundMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String company = args.length > 0 ? args[0] : "Hertz";
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        ContentionBenchmark benchmark = new ContentionBenchmark(company, seconds * 1000);
+        System.out.println("threads\tbookings/s\tfailed/s");
+        int firstDay = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            benchmark.round(threads, firstDay);
+            firstDay += ROUND_DAYS;
+        }
+    }
+
+    private void round(int threads, final int firstDay) throws Exception {
+        final AtomicLong booked = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] end = new long[1];
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final String renter = "bench-" + threads + "-" + i;
+            Thread client = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random();
+                    try {
+                        start.await();
+                        int booking = 0;
+                        while (System.currentTimeMillis() < end[0]) {
+                            if (book(renter + "-" + booking++, firstDay, random)) {
+                                booked.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            client.start();
+            clients.add(client);
+        }
+        end[0] = System.currentTimeMillis() + roundMillis;
+        start.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+        double seconds = roundMillis / 1000D;
+        System.out.println(String.format("%d\t%.1f\t%.1f", threads, booked.get() / seconds, failed.get() / seconds));
+    }
+
+    private boolean book(String renter, int firstDay, Random random) throws Exception {
+        CarRentalSessionRemote session = (CarRentalSessionRemote) new InitialContext().lookup(CarRentalSessionRemote.class.getName());
+        try {
+            session.setRenterName(renter);
+            Calendar day = Calendar.getInstance();
+            day.clear();
+            day.set(2030, Calendar.JANUARY, 1);
+            day.add(Calendar.DATE, firstDay + random.nextInt(WINDOW_DAYS));
+            Date start = day.getTime();
+            day.add(Calendar.DATE, 1 + random.nextInt(3));
+            Date end = day.getTime();
+            session.createQuote(company, new ReservationConstraints(start, end, CAR_TYPES[random.nextInt(CAR_TYPES.length)]));
+            session.confirmQuotes();
+            return true;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            // one session per booking, end it so the server does not keep it
+            try {
+                session.remove();
+            } catch (Exception e) {
+                // a failed confirm may have ended it already
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ import javax.ejb.Stateful;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import rental.FleetRow;
 import session.ManagerSessionRemote;
 
 public class DataLoader {
@@ -24,10 +25,10 @@ public class DataLoader {
 
 
     public void loadRental(String crcName, String datafile, ManagerSessionRemote ms) throws IOException {
-       ms.addCarRentalCompany(crcName);
         Logger.getLogger(DataLoader.class.getName()).log(Level.INFO, "loading {0} from file {1}", new Object[]{crcName, datafile});
 
      BufferedReader in = new BufferedReader(new InputStreamReader(DataLoader.class.getClassLoader().getResourceAsStream(datafile)));
+        List<FleetRow> fleet = new ArrayList<FleetRow>();
 //        while next line exists
         while (in.ready()) {
 //            read line
@@ -38,19 +39,17 @@ public class DataLoader {
             }
             //tokenize on ,
             StringTokenizer csvReader = new StringTokenizer(line, ",");
-            //create new car type from first 5 fields
-           int carTypeId= ms.addCarType(crcName,csvReader.nextToken(),
+            //car type from first 5 fields, N cars of that type where N is the 6th field
+            fleet.add(new FleetRow(csvReader.nextToken(),
                     Integer.parseInt(csvReader.nextToken()),
                     Float.parseFloat(csvReader.nextToken()),
                     Double.parseDouble(csvReader.nextToken()),
-                    Boolean.parseBoolean(csvReader.nextToken()));
-            
-            //create N new cars with given type, where N is the 5th field
-            for (int i = Integer.parseInt(csvReader.nextToken()); i > 0; i--) {
-                ms.addCar(crcName,carTypeId);
-            }
+                    Boolean.parseBoolean(csvReader.nextToken()),
+                    Integer.parseInt(csvReader.nextToken())));
         }
-            
+        in.close();
+        //whole fleet in one call and one transaction on the server
+        ms.loadFleet(crcName, fleet);
     }
 
      
@@ -0,0 +1,268 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/*
+ * Load generation mode of a scripted trip test. Many threads make trips of
+ * virtual renters, drawn from a TripModel, through the operations of the
+ * test, at a target rate of trips per second over all threads. Reports the
+ * latency percentiles per script command (S/A/B/F/MR/M) and how many of them
+ * failed.
+ *
+ * With a rate of 0 every thread starts its next trip as soon as the previous
+ * one is done. Otherwise every trip is due at a fixed time and a thread that
+ * falls behind starts its overdue trips right away. The commands of a trip
+ * are measured from when they were due, not from when they were sent, so a
+ * slow server shows in the latencies instead of only in fewer trips. Trips
+ * that started more than an interval late are counted.
+ */
+public class LoadGenerator<ReservationSession, ManagerSession> {
+
+    static final String[] COMMANDS = {"S", "A", "B", "F", "MR", "M"};
+    private static final int S = 0, A = 1, B = 2, F = 3, MR = 4, M = 5;
+
+    private final AbstractScriptedTripTest<ReservationSession, ManagerSession> test;
+    private final TripModel model;
+
+    public LoadGenerator(AbstractScriptedTripTest<ReservationSession, ManagerSession> test, TripModel model) {
+        this.test = test;
+        this.model = model;
+    }
+
+    /**
+     * Run the trips and print the report.
+     *
+     * @param threads number of client threads
+     * @param tripsPerSecond target rate over all threads, 0 for as fast as
+     * possible
+     * @param seconds duration of the run
+     */
+    public void run(int threads, double tripsPerSecond, long seconds) throws InterruptedException {
+        final long intervalNanos = tripsPerSecond > 0 ? (long) (threads * 1e9 / tripsPerSecond) : 0;
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] end = new long[1];
+        final List<Client> clients = new ArrayList<Client>();
+        List<Thread> running = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final Client client = new Client(i, intervalNanos);
+            clients.add(client);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        client.run(end[0]);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "load-" + i);
+            thread.start();
+            running.add(thread);
+        }
+        end[0] = System.nanoTime() + seconds * 1000000000L;
+        start.countDown();
+        for (Thread thread : running) {
+            thread.join();
+        }
+        report(clients, seconds);
+    }
+
+    private void report(List<Client> clients, long seconds) {
+        long trips = 0;
+        long late = 0;
+        for (Client client : clients) {
+            trips += client.trips;
+            late += client.late;
+        }
+        System.out.println(String.format("%d trips in %d s, %.1f trips/s, %d started late",
+                trips, seconds, trips / (double) seconds, late));
+        System.out.println("command\tcount\tfailed\tp50 ms\tp90 ms\tp99 ms\tp99.9 ms\tmax ms");
+        for (int c = 0; c < COMMANDS.length; c++) {
+            Samples samples = new Samples();
+            long failed = 0;
+            for (Client client : clients) {
+                samples.addAll(client.samples[c]);
+                failed += client.failed[c];
+            }
+            samples.sort();
+            System.out.println(String.format("%s\t%d\t%d\t%.2f\t%.2f\t%.2f\t%.2f\t%.2f", COMMANDS[c],
+                    samples.size, failed, samples.percentile(0.5), samples.percentile(0.9),
+                    samples.percentile(0.99), samples.percentile(0.999), samples.percentile(1)));
+            if (c == F && samples.size > 0) {
+                System.out.println(String.format("failed confirms: %.2f%%", 100D * failed / samples.size));
+            }
+        }
+    }
+
+    /**
+     * One client thread, it keeps its own samples so recording never
+     * contends.
+     */
+    private class Client {
+
+        private final Random random;
+        private final long intervalNanos;
+        private final Samples[] samples = new Samples[COMMANDS.length];
+        private final long[] failed = new long[COMMANDS.length];
+        private long trips;
+        private long late;
+        private long lag;
+        private ManagerSession managerSession;
+
+        Client(int index, long intervalNanos) {
+            this.random = new Random(index);
+            this.intervalNanos = intervalNanos;
+            for (int c = 0; c < COMMANDS.length; c++) {
+                samples[c] = new Samples();
+            }
+        }
+
+        void run(long end) throws InterruptedException {
+            // spread the threads over the first interval
+            long next = System.nanoTime() + (intervalNanos > 0 ? (long) (random.nextDouble() * intervalNanos) : 0);
+            while (next < end) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                } else if (intervalNanos > 0 && -wait > intervalNanos) {
+                    late++;
+                }
+                // how long after its due time the trip starts
+                lag = intervalNanos > 0 ? Math.max(0, System.nanoTime() - next) : 0;
+                trip();
+                trips++;
+                next = intervalNanos > 0 ? next + intervalNanos : System.nanoTime();
+            }
+        }
+
+        private void trip() {
+            String renter = model.renter(random);
+            long t = System.nanoTime();
+            ReservationSession session;
+            try {
+                session = test.getNewReservationSession(renter);
+                record(S, t, true);
+            } catch (Exception e) {
+                record(S, t, false);
+                return;
+            }
+            try {
+                book(renter, session);
+            } finally {
+                try {
+                    test.endReservationSession(session);
+                } catch (Exception e) {
+                    // a failed confirm may have ended it already
+                }
+            }
+
+            if (model.asksManager(random)) {
+                manage(renter);
+            }
+        }
+
+        private void book(String renter, ReservationSession session) {
+            Date[] period = model.period(random);
+            long t = System.nanoTime();
+            try {
+                test.checkForAvailableCarTypes(session, period[0], period[1]);
+                record(A, t, true);
+            } catch (Exception e) {
+                record(A, t, false);
+            }
+
+            for (int i = 0; i < model.getBookingsPerTrip(); i++) {
+                String company = model.company(random);
+                period = model.period(random);
+                t = System.nanoTime();
+                try {
+                    test.addQuoteToSession(session, renter, period[0], period[1], model.carType(random, company), company);
+                    record(B, t, true);
+                } catch (Exception e) {
+                    record(B, t, false);
+                }
+            }
+
+            t = System.nanoTime();
+            try {
+                test.confirmQuotes(session, renter);
+                record(F, t, true);
+            } catch (Exception e) {
+                record(F, t, false);
+            }
+        }
+
+        private void manage(String renter) {
+            String company = model.company(random);
+            long t = System.nanoTime();
+            try {
+                if (managerSession == null) {
+                    managerSession = test.getNewManagerSession("CarRent", company);
+                }
+                test.getNumberOfReservationsBy(managerSession, renter);
+                record(MR, t, true);
+            } catch (Exception e) {
+                record(MR, t, false);
+                return;
+            }
+            t = System.nanoTime();
+            try {
+                test.getNumberOfReservationsForCarType(managerSession, company, model.carType(random, company));
+                record(M, t, true);
+            } catch (Exception e) {
+                record(M, t, false);
+            }
+        }
+
+        // had the trip started on time, the command would have been sent lag earlier
+        private void record(int command, long start, boolean succeeded) {
+            samples[command].add(System.nanoTime() - start + lag);
+            if (!succeeded) {
+                failed[command]++;
+            }
+        }
+    }
+
+    /**
+     * Latencies in nanoseconds, sorted once for the percentiles.
+     */
+    private static final class Samples {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        /**
+         * @return the percentile in milliseconds, 0 without samples
+         */
+        double percentile(double fraction) {
+            if (size == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(fraction * size) - 1;
+            return values[Math.max(0, Math.min(size - 1, index))] / 1e6;
+        }
+    }
+}
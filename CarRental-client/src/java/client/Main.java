@@ -3,6 +3,7 @@ package client;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -14,11 +15,15 @@ import java.util.logging.Logger;
 import javax.naming.InitialContext;
 import rental.CarType;
 import rental.ReservationConstraints;
+import session.CacheStatistics;
 import session.CarRentalSessionRemote;
 import session.ManagerSessionRemote;
 
 public class Main extends AbstractScriptedTripTest<CarRentalSessionRemote, ManagerSessionRemote> {
 
+    // no printing of the available car types under load
+    private boolean quiet;
+
     private static void loadData(ManagerSessionRemote ms) throws IOException {
         DataLoader loader= new DataLoader();
         loader.loadRental("Hertz", "hertz.csv", ms);
@@ -29,14 +34,61 @@ public class Main extends AbstractScriptedTripTest<CarRentalSessionRemote, Manag
         super(scriptFile);
     }
 
+    /*
+     * Without arguments runs the trips script. With arguments
+     *   load [threads] [trips per second, 0 for unlimited] [seconds]
+     * it generates load instead. The trips are tuned with the system
+     * properties load.bookings, load.conflictRate, load.managerRate and
+     * load.renters, see TripModel. After the load it prints the hit ratios of
+     * the server caches during the run.
+     *
+     * To measure the catalog cache, run the same load twice against a fresh
+     * server started with and without -Drental.catalog.cache=false, e.g.
+     *   load 16 0 120
+     * and compare the trips per second and the latencies of command A, the
+     * available car types.
+     */
     public static void main(String[] args) throws Exception {
         Main main = new Main("trips");
         ManagerSessionRemote ms = main.getNewManagerSession("manager1", "noComp");
+        if (args.length > 0 && args[0].equals("load")) {
+            if (ms.getAllCarRentalCompanies().isEmpty()) {
+                loadData(ms);
+            }
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+            double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+            long seconds = args.length > 3 ? Long.parseLong(args[3]) : 60;
+            main.quiet = true;
+            TripModel model = createTripModel(ms);
+            CacheStatistics catalog = ms.getCatalogCacheStatistics();
+            CacheStatistics availability = ms.getAvailabilityCacheStatistics();
+            main.runLoad(model, threads, rate, seconds);
+            System.out.println("Catalog: " + ms.getCatalogCacheStatistics().since(catalog));
+            System.out.println("Availability: " + ms.getAvailabilityCacheStatistics().since(availability));
+            return;
+        }
         loadData(ms);
         main.run();
 
     }
 
+    private static TripModel createTripModel(ManagerSessionRemote ms) {
+        Map<String, List<String>> carTypes = new HashMap<String, List<String>>();
+        for (String company : ms.getAllCarRentalCompanies()) {
+            List<String> names = new ArrayList<String>();
+            for (CarType type : ms.getCarTypes(company)) {
+                names.add(type.getName());
+            }
+            carTypes.put(company, names);
+        }
+        TripModel model = new TripModel(carTypes);
+        model.setBookingsPerTrip(Integer.getInteger("load.bookings", model.getBookingsPerTrip()));
+        model.setConflictRate(Double.parseDouble(System.getProperty("load.conflictRate", "" + model.getConflictRate())));
+        model.setManagerRate(Double.parseDouble(System.getProperty("load.managerRate", "" + model.getManagerRate())));
+        model.setRenters(Integer.getInteger("load.renters", 1000));
+        return model;
+    }
+
     
     @Override
     protected CarRentalSessionRemote getNewReservationSession(String name) throws Exception {
@@ -53,8 +105,12 @@ public class Main extends AbstractScriptedTripTest<CarRentalSessionRemote, Manag
     
     @Override
     protected void checkForAvailableCarTypes(CarRentalSessionRemote session, Date start, Date end) throws Exception {
+        List<CarType> available = session.getAvailableCarTypes(start, end);
+        if (quiet) {
+            return;
+        }
         System.out.println("Available car types between "+start+" and "+end+":");
-        for(CarType ct : session.getAvailableCarTypes(start, end))
+        for(CarType ct : available)
             System.out.println("\t"+ct.toString());
         System.out.println();
     }
@@ -69,6 +125,11 @@ public class Main extends AbstractScriptedTripTest<CarRentalSessionRemote, Manag
         session.confirmQuotes();
     }
     
+    @Override
+    protected void endReservationSession(CarRentalSessionRemote session) throws Exception {
+        session.remove();
+    }
+    
     @Override
     protected int getNumberOfReservationsBy(ManagerSessionRemote ms, String renterName) throws Exception {
         return ms.getNumberOfReservationsBy(renterName);
@@ -0,0 +1,108 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import rental.EpochDays;
+
+/*
+ * Parameters of the trips made by the virtual renters of a LoadGenerator.
+ *
+ * A trip starts a session, checks the availability once, books a number of
+ * cars and confirms them. A booking is a conflicting one with the configured
+ * probability: it then falls in a short hot window that all renters compete
+ * for. Other bookings are spread over many years so they rarely collide.
+ * After confirming, the renter's reservations (MR) and the totals of a car
+ * type (M) are asked for with the configured manager probability.
+ */
+public class TripModel {
+
+    // 1 January 2031
+    private static final int HOT_FIRST_DAY = 22280;
+    private static final int SPREAD_FIRST_DAY = HOT_FIRST_DAY + 365;
+    private static final int SPREAD_DAYS = 20 * 365;
+
+    private final List<String> companies;
+    private final Map<String, List<String>> carTypes;
+    private int bookingsPerTrip = 3;
+    private double conflictRate = 0.1;
+    private int hotDays = 7;
+    private double managerRate = 0.1;
+    private int renters = 1000;
+
+    /**
+     * @param carTypes the names of the car types to book, per company
+     */
+    public TripModel(Map<String, List<String>> carTypes) {
+        this.carTypes = carTypes;
+        this.companies = new ArrayList<String>(carTypes.keySet());
+    }
+
+    public int getBookingsPerTrip() {
+        return bookingsPerTrip;
+    }
+
+    public void setBookingsPerTrip(int bookingsPerTrip) {
+        this.bookingsPerTrip = bookingsPerTrip;
+    }
+
+    public double getConflictRate() {
+        return conflictRate;
+    }
+
+    public void setConflictRate(double conflictRate) {
+        this.conflictRate = conflictRate;
+    }
+
+    public void setHotDays(int hotDays) {
+        this.hotDays = hotDays;
+    }
+
+    public double getManagerRate() {
+        return managerRate;
+    }
+
+    public void setManagerRate(double managerRate) {
+        this.managerRate = managerRate;
+    }
+
+    public void setRenters(int renters) {
+        this.renters = renters;
+    }
+
+    /***********
+     * DRAWING *
+     ***********/
+
+    String renter(Random random) {
+        return "load-" + random.nextInt(renters);
+    }
+
+    String company(Random random) {
+        return companies.get(random.nextInt(companies.size()));
+    }
+
+    String carType(Random random, String company) {
+        List<String> types = carTypes.get(company);
+        return types.get(random.nextInt(types.size()));
+    }
+
+    /**
+     * @return the start and end of a booking, conflicting or not
+     */
+    Date[] period(Random random) {
+        int startDay;
+        if (random.nextDouble() < conflictRate) {
+            startDay = HOT_FIRST_DAY + random.nextInt(hotDays);
+        } else {
+            startDay = SPREAD_FIRST_DAY + random.nextInt(SPREAD_DAYS);
+        }
+        return new Date[]{EpochDays.toDate(startDay), EpochDays.toDate(startDay + 1 + random.nextInt(3))};
+    }
+
+    boolean asksManager(Random random) {
+        return random.nextDouble() < managerRate;
+    }
+}
@@ -0,0 +1,44 @@
+package rental;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+
+/**
+ * Number of archived reservations of one renter, so counting the
+ * reservations of a renter never reads the archive.
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = "ArchivedRenterTotal.add",
+            query = "UPDATE ArchivedRenterTotal t SET t.total = t.total + :delta WHERE t.renter = :renter"),
+    @NamedQuery(name = "ArchivedRenterTotal.ofRenter",
+            query = "SELECT t.total FROM ArchivedRenterTotal t WHERE t.renter = :renter")
+})
+public class ArchivedRenterTotal {
+
+    @Id
+    private String renter;
+    private long total;
+
+    public ArchivedRenterTotal() {
+    }
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public ArchivedRenterTotal(String renter, long total) {
+        this.renter = renter;
+        this.total = total;
+    }
+
+    public String getRenter() {
+        return renter;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,79 @@
+package rental;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * A reservation that ended before the archive horizon, moved out of the
+ * Reservation table by the ReservationArchiver. It keeps the id it had.
+ */
+@Entity
+public class ArchivedReservation {
+
+    @Id
+    private int id;
+    private int carId;
+    private String carRenter;
+    private String rentalCompany;
+    private String carType;
+    private int startDay;
+    private int endDay;
+    private double rentalPrice;
+    // the epoch day it was archived on
+    private int archivedDay;
+
+    public ArchivedReservation() {
+    }
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public ArchivedReservation(Reservation reservation, int archivedDay) {
+        this.id = reservation.getId();
+        this.carId = reservation.getCarId();
+        this.carRenter = reservation.getCarRenter();
+        this.rentalCompany = reservation.getRentalCompany();
+        this.carType = reservation.getCarType();
+        this.startDay = reservation.getStartDay();
+        this.endDay = reservation.getEndDay();
+        this.rentalPrice = reservation.getRentalPrice();
+        this.archivedDay = archivedDay;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getCarId() {
+        return carId;
+    }
+
+    public String getCarRenter() {
+        return carRenter;
+    }
+
+    public String getRentalCompany() {
+        return rentalCompany;
+    }
+
+    public String getCarType() {
+        return carType;
+    }
+
+    public int getStartDay() {
+        return startDay;
+    }
+
+    public int getEndDay() {
+        return endDay;
+    }
+
+    public double getRentalPrice() {
+        return rentalPrice;
+    }
+
+    public int getArchivedDay() {
+        return archivedDay;
+    }
+}
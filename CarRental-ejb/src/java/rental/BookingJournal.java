@@ -0,0 +1,274 @@
+package rental;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Journal of the quote, confirm and cancel events, in the binary layout of
+ * {@link JournalFormat}.
+ *
+ * Events are written into a preallocated ring of records. A writer claims
+ * its records with a single atomic increment and publishes each of them
+ * when it is filled in, so writers never lock and an event allocates
+ * nothing once its names have been seen. A background thread copies the
+ * published records in order to a memory mapped file.
+ *
+ * The journal is opened and closed with the application, see
+ * session.JournalKeeper; events outside of that are dropped. It is written
+ * to bookings-[start time].journal in the given directory. Read it with
+ * BookingJournalReader.
+ */
+public final class BookingJournal {
+
+    private static final Logger logger = Logger.getLogger(BookingJournal.class.getName());
+    private static final int RECORD = JournalFormat.RECORD_SIZE;
+    private static final int SLOTS = 1 << 16;
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    // names are forgotten beyond this, they are written again when used
+    private static final int MAX_SYMBOLS = 1 << 20;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static volatile BookingJournal journal;
+
+    private final FileChannel channel;
+    private final Thread drainer;
+    private final ByteBuffer ring = ByteBuffer.allocateDirect(SLOTS * RECORD);
+    // the sequence number last published in every slot
+    private final AtomicLongArray published = new AtomicLongArray(SLOTS);
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long drained;
+    // once the file cannot be written, events are dropped rather than waited for
+    private volatile boolean stopped;
+    private volatile boolean closed;
+    private final ConcurrentMap<String, Integer> symbols = new ConcurrentHashMap<String, Integer>();
+    private final AtomicInteger nextSymbol = new AtomicInteger(1);
+    private MappedByteBuffer segment;
+    private long segmentOffset;
+
+    private BookingJournal(FileChannel channel) throws IOException {
+        this.channel = channel;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            published.set(slot, -1);
+        }
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "booking-journal");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /*************
+     * LIFECYCLE *
+     *************/
+
+    /**
+     * Start journaling to a new file in the directory, unless a journal is
+     * open already.
+     */
+    public static synchronized void open(File dir) {
+        if (journal != null) {
+            return;
+        }
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            File file = new File(dir, "bookings-" + System.currentTimeMillis() + ".journal");
+            journal = new BookingJournal(new RandomAccessFile(file, "rw").getChannel());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Booking journal disabled", e);
+        }
+    }
+
+    /**
+     * Write what is left of the open journal and close it, stopping its
+     * thread.
+     */
+    public static synchronized void close() {
+        BookingJournal closing = journal;
+        journal = null;
+        if (closing == null) {
+            return;
+        }
+        closing.closed = true;
+        try {
+            closing.drainer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closing.flush();
+        try {
+            closing.channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot close booking journal", e);
+        }
+    }
+
+    /**********
+     * EVENTS *
+     **********/
+
+    public static void quoted(Quote quote) {
+        BookingJournal current = journal;
+        if (current != null) {
+            current.write(JournalFormat.QUOTE, quote, 0, 0);
+        }
+    }
+
+    public static void confirmed(Reservation reservation) {
+        BookingJournal current = journal;
+        if (current != null) {
+            current.write(JournalFormat.CONFIRM, reservation, reservation.getCarId(), reservation.getId());
+        }
+    }
+
+    public static void cancelled(Reservation reservation) {
+        BookingJournal current = journal;
+        if (current != null) {
+            current.write(JournalFormat.CANCEL, reservation, reservation.getCarId(), reservation.getId());
+        }
+    }
+
+    private void write(byte type, Quote quote, int carId, int reservationId) {
+        int company = symbol(quote.getRentalCompany());
+        int renter = symbol(quote.getCarRenter());
+        int carType = symbol(quote.getCarType());
+        long sequence = claim(1);
+        int at = offset(sequence);
+        ring.putLong(at + JournalFormat.TIME, System.currentTimeMillis());
+        ring.putInt(at + JournalFormat.COMPANY, company);
+        ring.putInt(at + JournalFormat.RENTER, renter);
+        ring.putInt(at + JournalFormat.CAR_TYPE, carType);
+        ring.putInt(at + JournalFormat.START_DAY, quote.getStartDay());
+        ring.putInt(at + JournalFormat.END_DAY, quote.getEndDay());
+        ring.putDouble(at + JournalFormat.PRICE, quote.getRentalPrice());
+        ring.putInt(at + JournalFormat.CAR, carId);
+        ring.putInt(at + JournalFormat.RESERVATION, reservationId);
+        ring.put(at + JournalFormat.TYPE, type);
+        published.lazySet(slot(sequence), sequence);
+    }
+
+    /**
+     * @return the id of the name, writing its symbol record the first time
+     */
+    private int symbol(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer id = symbols.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (symbols.size() > MAX_SYMBOLS) {
+            symbols.clear();
+        }
+        Integer created = nextSymbol.getAndIncrement();
+        id = symbols.putIfAbsent(name, created);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = name.getBytes(UTF_8);
+        int records = JournalFormat.symbolRecords(bytes.length);
+        long first = claim(records);
+        byte[] symbol = new byte[records * RECORD];
+        ByteBuffer.wrap(symbol).put(JournalFormat.TYPE, JournalFormat.SYMBOL)
+                .putInt(JournalFormat.SYMBOL_ID, created)
+                .putInt(JournalFormat.SYMBOL_LENGTH, bytes.length);
+        System.arraycopy(bytes, 0, symbol, JournalFormat.SYMBOL_NAME, bytes.length);
+        for (int r = 0; r < records; r++) {
+            int at = offset(first + r);
+            for (int i = 0; i < RECORD; i++) {
+                ring.put(at + i, symbol[r * RECORD + i]);
+            }
+            published.lazySet(slot(first + r), first + r);
+        }
+        return created;
+    }
+
+    /********
+     * RING *
+     ********/
+
+    // waits while the drainer is a full ring behind
+    private long claim(int records) {
+        long sequence = claimed.getAndAdd(records);
+        while (sequence + records - drained > SLOTS && !stopped && !closed) {
+            LockSupport.parkNanos(10000);
+        }
+        return sequence;
+    }
+
+    private static int slot(long sequence) {
+        return (int) (sequence & (SLOTS - 1));
+    }
+
+    private static int offset(long sequence) {
+        return slot(sequence) * RECORD;
+    }
+
+    private void drain() {
+        while (!stopped && !closed) {
+            if (!drainPublished()) {
+                LockSupport.parkNanos(1000000);
+            }
+        }
+    }
+
+    /**
+     * Copy the published records to the file, in order.
+     *
+     * @return whether any record was copied
+     */
+    private synchronized boolean drainPublished() {
+        ByteBuffer records = ring.duplicate();
+        long next = drained;
+        while (published.get(slot(next)) == next) {
+            int at = offset(next);
+            records.limit(at + RECORD).position(at);
+            try {
+                if (!segment.hasRemaining()) {
+                    nextSegment();
+                }
+                segment.put(records);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Booking journal stopped", e);
+                stopped = true;
+                return false;
+            }
+            next++;
+        }
+        boolean copied = next != drained;
+        drained = next;
+        return copied;
+    }
+
+    private void nextSegment() throws IOException {
+        segment.force();
+        segmentOffset += SEGMENT_SIZE;
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, segmentOffset, SEGMENT_SIZE);
+    }
+
+    private synchronized void flush() {
+        if (!stopped) {
+            drainPublished();
+            segment.force();
+        }
+    }
+
+}
@@ -5,19 +5,53 @@ import java.util.HashSet;
 import java.util.Set;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 
+// the anti-joins on Reservation use its (carId, startDay, endDay) index, see orm.xml
 @Entity
+@NamedQueries({
+    @NamedQuery(name = "Car.reservationCount",
+            query = "SELECT car.reservationCount FROM CarRentalCompany crc JOIN crc.cars car "
+            + "WHERE crc.name = :company AND car.id = :id"),
+    @NamedQuery(name = "Car.availableTypes",
+            query = "SELECT DISTINCT car.type FROM CarRentalCompany crc JOIN crc.cars car "
+            + "WHERE crc.name = :company AND NOT EXISTS ("
+            + "SELECT r FROM Reservation r WHERE r.carId = car.id "
+            + "AND r.startDay <= :endDay AND r.endDay >= :startDay)"),
+    @NamedQuery(name = "Car.availableIds",
+            query = "SELECT car.id FROM CarRentalCompany crc JOIN crc.cars car "
+            + "WHERE crc.name = :company AND car.type.name = :carType AND NOT EXISTS ("
+            + "SELECT r FROM Reservation r WHERE r.carId = car.id "
+            + "AND r.startDay <= :endDay AND r.endDay >= :startDay)")
+})
 public class Car {
     @Id @GeneratedValue
     private int id;
     @ManyToOne()
     private CarType type;
-    @OneToMany(cascade=CascadeType.ALL)
+    // read through Reservation.carId: bookings persist the reservation on
+    // its own, so booking a car never loads its reservations
+    @OneToMany(cascade=CascadeType.ALL, fetch=FetchType.LAZY)
+    @JoinColumn(name="CARID", insertable=false, updatable=false)
     private Set<Reservation> reservations;
+    // kept next to the reservations, so counting them does not load them,
+    // archived reservations included
+    private int reservationCount;
+    // bumped on every booking, so concurrent bookings of the same car conflict
+    @Version
+    private int version;
+    // built on first use, so loading a car does not load its reservations
+    @Transient
+    private ReservationIndex index;
 
     public Car() {
     }
@@ -37,6 +71,10 @@ public class Car {
     public int getId() {
     	return id;
     }
+
+    public int getVersion() {
+        return version;
+    }
     
     /************
      * CAR TYPE *
@@ -59,21 +97,38 @@ public class Car {
         if(!start.before(end))
             throw new IllegalArgumentException("Illegal given period");
 
-        for(Reservation reservation : reservations) {
-            if(reservation.getEndDate().before(start) || reservation.getStartDate().after(end))
-                continue;
-            return false;
-        }
-        return true;
+        return isAvailable(EpochDays.fromDate(start), EpochDays.fromDate(end));
+    }
+
+    public boolean isAvailable(int startDay, int endDay) {
+        return !getIndex().overlaps(startDay, endDay);
     }
     
-    public void addReservation(Reservation res) {
-        reservations.add(res);
+    public boolean addReservation(Reservation res) {
+        if(!reservations.add(res))
+            return false;
+        if(index != null)
+            index.add(res);
+        reservationCount++;
+        return true;
     }
     
-    public void removeReservation(Reservation reservation) {
+    public boolean removeReservation(Reservation reservation) {
         // equals-method for Reservation is required!
-        reservations.remove(reservation);
+        if(!reservations.remove(reservation))
+            return false;
+        if(index != null)
+            index.remove(reservation);
+        reservationCount--;
+        return true;
+    }
+
+    /**
+     * Count a reservation that is persisted on its own, see
+     * session.ReservationBooker.
+     */
+    public void countReservation() {
+        reservationCount++;
     }
 
         public Set<Reservation> getReservations() {
@@ -82,5 +137,18 @@ public class Car {
     
     public void setReservations(Set<Reservation> reservations) {
         this.reservations = reservations;
+        this.reservationCount = reservations.size();
+        this.index = null;
+    }
+
+    public int getReservationCount() {
+        return reservationCount;
+    }
+
+    private ReservationIndex getIndex() {
+        if (index == null) {
+            index = new ReservationIndex(reservations);
+        }
+        return index;
     }
 }
\ No newline at end of file
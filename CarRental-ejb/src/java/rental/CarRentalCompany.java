@@ -1,31 +1,50 @@
 package rental;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.Transient;
 
+// in the shared cache, see session.CatalogCache
 @Entity
+@Cacheable
 public class CarRentalCompany {
 
     private static Logger logger = Logger.getLogger(CarRentalCompany.class.getName());
     @Id
     private String name;
-    @OneToMany(cascade = CascadeType.ALL)
+    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<Car> cars;
     @OneToOne(cascade = CascadeType.ALL)
     private List<CarType> carTypes = new ArrayList<CarType>();
+    // lookup indexes, built on first use and kept up to date by addCar/addCarType
+    @Transient
+    private Map<String, CarType> typesByName;
+    @Transient
+    private Map<Integer, Car> carsById;
+    // whether carsById misses cars that were added before they had an id
+    @Transient
+    private boolean carIdsPending;
+    @Transient
+    private Map<String, List<Car>> carsByType;
+    @Transient
+    private PricingStrategy pricing;
 
     public CarRentalCompany() {
     }
@@ -64,71 +83,150 @@ public class CarRentalCompany {
     }
 
     public CarType getType(String carTypeName) {
-        for (CarType type : carTypes) {
-            if (type.getName().equals(carTypeName)) {
-                return type;
+        CarType type = findType(carTypeName);
+        if (type == null) {
+            throw new IllegalArgumentException("<" + carTypeName + "> No cartype of name " + carTypeName);
+        }
+        return type;
+    }
+
+    /**
+     * @return the car type of the given name, or null if there is none
+     */
+    public CarType findType(String carTypeName) {
+        return getTypesByName().get(carTypeName);
+    }
+
+    private Map<String, CarType> getTypesByName() {
+        if (typesByName == null) {
+            typesByName = new HashMap<String, CarType>();
+            for (CarType type : carTypes) {
+                typesByName.put(type.getName(), type);
             }
         }
-        throw new IllegalArgumentException("<" + carTypeName + "> No cartype of name " + carTypeName);
+        return typesByName;
     }
 
     public boolean isAvailable(String carTypeName, Date start, Date end) {
-        logger.log(Level.INFO, "<{0}> Checking availability for car type {1}", new Object[]{name, carTypeName});
-        return getAvailableCarTypes(start, end).contains(getType(carTypeName));
+        checkPeriod(start, end);
+        return isAvailable(carTypeName, EpochDays.fromDate(start), EpochDays.fromDate(end));
+    }
+
+    private boolean isAvailable(String carTypeName, int startDay, int endDay) {
+        checkPeriod(startDay, endDay);
+        return hasFreeCar(getType(carTypeName).getName(), startDay, endDay);
     }
 
     public Set<CarType> getAvailableCarTypes(Date start, Date end) {
+        checkPeriod(start, end);
+        int startDay = EpochDays.fromDate(start);
+        int endDay = EpochDays.fromDate(end);
         Set<CarType> availableCarTypes = new HashSet<CarType>();
-        for (Car car : cars) {
-            if (car.isAvailable(start, end)) {
-                availableCarTypes.add(car.getType());
+        for (CarType type : carTypes) {
+            if (hasFreeCar(type.getName(), startDay, endDay)) {
+                availableCarTypes.add(type);
             }
         }
         return availableCarTypes;
     }
 
+    private void checkPeriod(Date start, Date end) {
+        if (!start.before(end)) {
+            throw new IllegalArgumentException("Illegal given period");
+        }
+    }
+
+    private void checkPeriod(int startDay, int endDay) {
+        if (startDay >= endDay) {
+            throw new IllegalArgumentException("Illegal given period");
+        }
+    }
+
     /**
      * *******
      * CARS *
      ********
      */
     public Car getCar(int uid) {
-        for (Car car : cars) {
-            if (car.getId() == uid) {
-                return car;
-            }
+        if (carsById == null) {
+            indexCars();
+        }
+        Car car = carsById.get(uid);
+        if (car == null && carIdsPending) {
+            // new cars only get their id when they are persisted
+            indexCars();
+            car = carsById.get(uid);
+        }
+        if (car == null) {
+            throw new IllegalArgumentException("<" + name + "> No car with uid " + uid);
         }
-        throw new IllegalArgumentException("<" + name + "> No car with uid " + uid);
+        return car;
     }
 
     public Set<Car> getCars(CarType type) {
-        Set<Car> out = new HashSet<Car>();
-        for (Car car : cars) {
-            if (car.getType().equals(type)) {
-                out.add(car);
-            }
-        }
-        return out;
+        return getCars(type.getName());
     }
 
     public Set<Car> getCars(String type) {
-        Set<Car> out = new HashSet<Car>();
-        for (Car car : cars) {
-            if (type.equals(car.getType().getName())) {
-                out.add(car);
+        if (carsByType == null) {
+            indexCars();
+        }
+        List<Car> ofType = carsByType.get(type);
+        return ofType == null ? new HashSet<Car>() : new HashSet<Car>(ofType);
+    }
+
+    // the per-type day bitmaps are kept server-wide, see FleetOccupancy and
+    // session.OccupancyStore, since a copy per entity was rebuilt by every
+    // transaction; this scan serves the company on its own, e.g. in the
+    // benchmarks
+    private boolean hasFreeCar(String carType, int startDay, int endDay) {
+        if (carsByType == null) {
+            indexCars();
+        }
+        List<Car> ofType = carsByType.get(carType);
+        if (ofType != null) {
+            for (Car car : ofType) {
+                if (car.isAvailable(startDay, endDay)) {
+                    return true;
+                }
             }
         }
-        return out;
+        return false;
     }
 
-    private List<Car> getAvailableCars(String carType, Date start, Date end) {
-        List<Car> availableCars = new LinkedList<Car>();
-        for (Car car : cars) {
-            if (car.getType().getName().equals(carType) && car.isAvailable(start, end)) {
+    // a random free car of the type, so concurrent bookings rarely pick the same one
+    private Car getAvailableCar(String carType, int startDay, int endDay) {
+        checkPeriod(startDay, endDay);
+        List<Car> availableCars = new ArrayList<Car>();
+        for (Car car : getCars(getType(carType).getName())) {
+            if (car.isAvailable(startDay, endDay)) {
                 availableCars.add(car);
             }
         }
-        return availableCars;
+        return availableCars.isEmpty() ? null : availableCars.get((int) (Math.random() * availableCars.size()));
+    }
+
+    private void indexCars() {
+        carsById = new HashMap<Integer, Car>();
+        carIdsPending = false;
+        carsByType = new HashMap<String, List<Car>>();
+        for (Car car : cars) {
+            indexCar(car);
+        }
+    }
+
+    private void indexCar(Car car) {
+        if (car.getId() == 0) {
+            carIdsPending = true;
+        } else {
+            carsById.put(car.getId(), car);
+        }
+        List<Car> ofType = carsByType.get(car.getType().getName());
+        if (ofType == null) {
+            ofType = new ArrayList<Car>();
+            carsByType.put(car.getType().getName(), ofType);
+        }
+        ofType.add(car);
     }
 
     /**
@@ -138,48 +236,110 @@ public class CarRentalCompany {
      */
     public Quote createQuote(ReservationConstraints constraints, String guest)
             throws ReservationException {
-        logger.log(Level.INFO, "<{0}> Creating tentative reservation for {1} with constraints {2}",
-                new Object[]{name, guest, constraints.toString()});
+        Quote quote = priceQuote(constraints, guest);
 
-        CarType type = getType(constraints.getCarType());
-
-        if (!isAvailable(constraints.getCarType(), constraints.getStartDate(), constraints.getEndDate())) {
+        if (!isAvailable(constraints.getCarType(), constraints.getStartDay(), constraints.getEndDay())) {
             throw new ReservationException("<" + name
                     + "> No cars available to satisfy the given constraints.");
         }
 
-        double price = calculateRentalPrice(type.getRentalPricePerDay(), constraints.getStartDate(), constraints.getEndDate());
+        BookingJournal.quoted(quote);
+        return quote;
+    }
+
+    /**
+     * Price the constraints without checking availability, for callers that
+     * checked it already.
+     */
+    public Quote priceQuote(ReservationConstraints constraints, String guest) {
+        CarType type = getType(constraints.getCarType());
+
+        double price = getPricing().price(type.getRentalPricePerDay(), constraints.getStartDay(), constraints.getEndDay());
+
+        return new Quote(guest, constraints.getStartDay(), constraints.getEndDay(), getName(), constraints.getCarType(), price);
+    }
 
-        return new Quote(guest, constraints.getStartDate(), constraints.getEndDate(), getName(), constraints.getCarType(), price);
+    /**
+     * Price renting each of the car types for the same period, in one pass
+     * of the pricing strategy. Availability is not checked.
+     */
+    public List<Quote> priceQuotes(Collection<CarType> carTypes, int startDay, int endDay, String guest) {
+        checkPeriod(startDay, endDay);
+        int count = carTypes.size();
+        double[] rates = new double[count];
+        int[] startDays = new int[count];
+        int[] endDays = new int[count];
+        double[] prices = new double[count];
+        int i = 0;
+        for (CarType type : carTypes) {
+            rates[i] = type.getRentalPricePerDay();
+            startDays[i] = startDay;
+            endDays[i] = endDay;
+            i++;
+        }
+        getPricing().priceAll(rates, startDays, endDays, prices, count);
+        List<Quote> quotes = new ArrayList<Quote>(count);
+        i = 0;
+        for (CarType type : carTypes) {
+            quotes.add(new Quote(guest, startDay, endDay, getName(), type.getName(), prices[i++]));
+        }
+        return quotes;
     }
 
-    // Implementation can be subject to different pricing strategies
-    private double calculateRentalPrice(double rentalPricePerDay, Date start, Date end) {
-        return rentalPricePerDay * Math.ceil((end.getTime() - start.getTime())
-                / (1000 * 60 * 60 * 24D));
+    /**
+     * The cheapest offers of this company for the period, at most limit of
+     * them, cheapest first. Only car types that pass the filter and are in
+     * availableTypes are offered. The index is of the car types of this
+     * company.
+     *
+     * Types are tried in order of daily rate, so once limit offers are found
+     * or a price reaches maxPrice the rest cannot be cheaper.
+     */
+    public List<Offer> getCheapestOffers(CarTypeIndex index, CarTypeFilter filter, Set<CarType> availableTypes,
+            int startDay, int endDay, int limit, double maxPrice) {
+        checkPeriod(startDay, endDay);
+        List<Offer> out = new ArrayList<Offer>();
+        BitSet matching = index.matching(filter);
+        for (int i = matching.nextSetBit(0); i >= 0 && out.size() < limit; i = matching.nextSetBit(i + 1)) {
+            CarType type = index.get(i);
+            if (availableTypes.contains(type)) {
+                double price = getPricing().price(type.getRentalPricePerDay(), startDay, endDay);
+                if (price > maxPrice) {
+                    break;
+                }
+                out.add(new Offer(getName(), type, price));
+            }
+        }
+        return out;
+    }
+
+    private PricingStrategy getPricing() {
+        if (pricing == null) {
+            pricing = PricingStrategies.forCompany(name);
+        }
+        return pricing;
     }
 
     public Reservation confirmQuote(Quote quote) throws ReservationException {
-        logger.log(Level.INFO, "<{0}> Reservation of {1}", new Object[]{name, quote.toString()});
-        List<Car> availableCars = getAvailableCars(quote.getCarType(), quote.getStartDate(), quote.getEndDate());
-        if (availableCars.isEmpty()) {
+        Car car = getAvailableCar(quote.getCarType(), quote.getStartDay(), quote.getEndDay());
+        if (car == null) {
             throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
                     + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
         }
-        Car car = availableCars.get((int) (Math.random() * availableCars.size()));
 
         Reservation res = new Reservation(quote, car.getId());
         car.addReservation(res);
+        BookingJournal.confirmed(res);
         return res;
     }
 
     public void cancelReservation(Reservation res) {
-        logger.log(Level.INFO, "<{0}> Cancelling reservation {1}", new Object[]{name, res.toString()});
-        getCar(res.getCarId()).removeReservation(res);
+        if (getCar(res.getCarId()).removeReservation(res)) {
+            BookingJournal.cancelled(res);
+        }
     }
 
     public Set<Reservation> getReservationsBy(String renter) {
-        logger.log(Level.INFO, "<{0}> Retrieving reservations by {1}", new Object[]{name, renter});
         Set<Reservation> out = new HashSet<Reservation>();
         for (Car c : cars) {
             for (Reservation r : c.getReservations()) {
@@ -194,14 +354,16 @@ public class CarRentalCompany {
     public void addCar(Car car) {
         cars.add(car);
         CarType newCarType = car.getType();
-        if (!carTypes.contains(newCarType)) {
-            carTypes.add(newCarType);
+        addCarType(newCarType);
+        if (carsById != null) {
+            indexCar(car);
         }
     }
 
     public void addCarType(CarType carType) {
-     if (!carTypes.contains(carType)) {
+     if (!getTypesByName().containsKey(carType.getName())) {
             carTypes.add(carType);
+            typesByName.put(carType.getName(), carType);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+package rental;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The car types of a company, indexed on their attributes.
+ *
+ * Every type gets a position in order of daily rate. The seats and trunk
+ * space are kept sorted, each with the positions of their types, so all types
+ * with at least so many seats are a suffix found by binary search. Smoking is
+ * a bitset of positions. A filter ANDs the bitsets of its attributes and the
+ * set bits come out cheapest first.
+ *
+ * An index never changes, it is kept per company by the CatalogCache.
+ */
+public class CarTypeIndex {
+
+    // the types in order of daily rate
+    private final CarType[] byRate;
+    private final int[] seats;
+    private final int[] seatsPositions;
+    private final float[] trunkSpaces;
+    private final int[] trunkPositions;
+    private final BitSet smoking = new BitSet();
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public CarTypeIndex(Collection<CarType> carTypes) {
+        List<CarType> types = new ArrayList<CarType>(carTypes);
+        Collections.sort(types, new Comparator<CarType>() {
+            @Override
+            public int compare(CarType a, CarType b) {
+                int c = Double.compare(a.getRentalPricePerDay(), b.getRentalPricePerDay());
+                return c != 0 ? c : a.getName().compareTo(b.getName());
+            }
+        });
+        byRate = types.toArray(new CarType[types.size()]);
+        int count = byRate.length;
+
+        Integer[] order = positions(count);
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return byRate[a].getNbOfSeats() - byRate[b].getNbOfSeats();
+            }
+        });
+        seats = new int[count];
+        seatsPositions = new int[count];
+        for (int i = 0; i < count; i++) {
+            seatsPositions[i] = order[i];
+            seats[i] = byRate[order[i]].getNbOfSeats();
+        }
+
+        order = positions(count);
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Float.compare(byRate[a].getTrunkSpace(), byRate[b].getTrunkSpace());
+            }
+        });
+        trunkSpaces = new float[count];
+        trunkPositions = new int[count];
+        for (int i = 0; i < count; i++) {
+            trunkPositions[i] = order[i];
+            trunkSpaces[i] = byRate[order[i]].getTrunkSpace();
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (byRate[i].isSmokingAllowed()) {
+                smoking.set(i);
+            }
+        }
+    }
+
+    /**********
+     * SEARCH *
+     **********/
+
+    /**
+     * @return the positions of the types that pass the filter, see get
+     */
+    BitSet matching(CarTypeFilter filter) {
+        BitSet out = atLeast(seatsPositions, firstAtLeast(seats, filter.getMinSeats()));
+        out.and(atLeast(trunkPositions, firstAtLeast(trunkSpaces, filter.getMinTrunkSpace())));
+        if (filter.getSmokingAllowed() != null) {
+            if (filter.getSmokingAllowed()) {
+                out.and(smoking);
+            } else {
+                out.andNot(smoking);
+            }
+        }
+        return out;
+    }
+
+    CarType get(int position) {
+        return byRate[position];
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private static Integer[] positions(int count) {
+        Integer[] out = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            out[i] = i;
+        }
+        return out;
+    }
+
+    private static BitSet atLeast(int[] positions, int from) {
+        BitSet out = new BitSet(positions.length);
+        for (int i = from; i < positions.length; i++) {
+            out.set(positions[i]);
+        }
+        return out;
+    }
+
+    private static int firstAtLeast(int[] sorted, int min) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstAtLeast(float[] sorted, float min) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
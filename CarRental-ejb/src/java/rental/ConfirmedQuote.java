@@ -0,0 +1,43 @@
+package rental;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+
+/**
+ * A quote token that was confirmed, by the nonce it carries, so the same
+ * token cannot be booked twice on any server. Kept until the token expires.
+ */
+@Entity
+@NamedQueries({
+    @NamedQuery(name = "ConfirmedQuote.expiredBefore",
+            query = "DELETE FROM ConfirmedQuote q WHERE q.expires < :now")
+})
+public class ConfirmedQuote {
+
+    @Id
+    private long nonce;
+    // the expiry of the token, in seconds since the epoch
+    private int expires;
+
+    public ConfirmedQuote() {
+    }
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public ConfirmedQuote(long nonce, int expires) {
+        this.nonce = nonce;
+        this.expires = expires;
+    }
+
+    public long getNonce() {
+        return nonce;
+    }
+
+    public int getExpires() {
+        return expires;
+    }
+}
@@ -0,0 +1,19 @@
+package rental;
+
+/**
+ * The daily rate for every day of the rental.
+ */
+public class FlatPricing implements PricingStrategy {
+
+    @Override
+    public double price(double rentalPricePerDay, int startDay, int endDay) {
+        return rentalPricePerDay * (endDay - startDay);
+    }
+
+    @Override
+    public void priceAll(double[] ratesPerDay, int[] startDays, int[] endDays, double[] prices, int count) {
+        for (int i = 0; i < count; i++) {
+            prices[i] = ratesPerDay[i] * (endDays[i] - startDays[i]);
+        }
+    }
+}
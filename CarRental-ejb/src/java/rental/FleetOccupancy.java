@@ -0,0 +1,209 @@
+package rental;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Day-granular occupancy of the whole fleet of a company, by car id rather
+ * than by car entity, so it can outlive the persistence contexts and be
+ * written to an OccupancySnapshot. Safe for concurrent use.
+ *
+ * Reservations can only be added, and adding one twice is harmless.
+ */
+public class FleetOccupancy {
+
+    private final String company;
+    private final Map<String, Slots> types = new LinkedHashMap<String, Slots>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public FleetOccupancy(String company) {
+        this.company = company;
+    }
+
+    public String getCompany() {
+        return company;
+    }
+
+    /********
+     * CARS *
+     ********/
+
+    public void addCar(String carType, int carId) {
+        lock.writeLock().lock();
+        try {
+            slotsOf(carType).slotOf(carId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the car type of every car, by car id
+     */
+    public Map<Integer, String> getCarTypes() {
+        lock.readLock().lock();
+        try {
+            Map<Integer, String> out = new HashMap<Integer, String>();
+            for (Map.Entry<String, Slots> type : types.entrySet()) {
+                for (Integer carId : type.getValue().carIds) {
+                    out.put(carId, type.getKey());
+                }
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /****************
+     * RESERVATIONS *
+     ****************/
+
+    public void reserve(String carType, int carId, int startDay, int endDay) {
+        lock.writeLock().lock();
+        try {
+            Slots slots = slotsOf(carType);
+            slots.occupancy.mark(slots.slotOf(carId), startDay, endDay);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forget the days before the given one, once they are archived.
+     */
+    public void dropBefore(int day) {
+        lock.writeLock().lock();
+        try {
+            for (Slots slots : types.values()) {
+                slots.occupancy.dropBefore(day);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /****************
+     * AVAILABILITY *
+     ****************/
+
+    /**
+     * @return the names of the car types with a car that is free on every
+     * day from startDay until endDay (both included)
+     */
+    public Set<String> getAvailableCarTypes(int startDay, int endDay) {
+        lock.readLock().lock();
+        try {
+            Set<String> out = new HashSet<String>();
+            for (Map.Entry<String, Slots> type : types.entrySet()) {
+                if (type.getValue().occupancy.hasFree(startDay, endDay)) {
+                    out.add(type.getKey());
+                }
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasFreeCar(String carType, int startDay, int endDay) {
+        lock.readLock().lock();
+        try {
+            Slots slots = types.get(carType);
+            return slots != null && slots.occupancy.hasFree(startDay, endDay);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of cars of the type that are free on every day from
+     * startDay until endDay (both included)
+     */
+    public int countFreeCars(String carType, int startDay, int endDay) {
+        lock.readLock().lock();
+        try {
+            Slots slots = types.get(carType);
+            return slots == null ? 0 : slots.occupancy.countFree(startDay, endDay);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /************
+     * SNAPSHOT *
+     ************/
+
+    // the types and their slots, for OccupancySnapshot, under the read lock
+    void read(Visitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Slots> type : types.entrySet()) {
+                Slots slots = type.getValue();
+                visitor.visit(type.getKey(), slots.carIds, slots.occupancy);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // a type as read by OccupancySnapshot, before the fleet is shared
+    void put(String carType, int[] carIds, SlotOccupancy occupancy) {
+        Slots slots = new Slots(occupancy);
+        for (int carId : carIds) {
+            slots.slotByCar.put(carId, slots.carIds.size());
+            slots.carIds.add(carId);
+        }
+        types.put(carType, slots);
+    }
+
+    interface Visitor {
+
+        void visit(String carType, List<Integer> carIds, SlotOccupancy occupancy);
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private Slots slotsOf(String carType) {
+        Slots slots = types.get(carType);
+        if (slots == null) {
+            slots = new Slots(new SlotOccupancy());
+            types.put(carType, slots);
+        }
+        return slots;
+    }
+
+    private static final class Slots {
+
+        private final List<Integer> carIds = new ArrayList<Integer>();
+        private final Map<Integer, Integer> slotByCar = new HashMap<Integer, Integer>();
+        private final SlotOccupancy occupancy;
+
+        Slots(SlotOccupancy occupancy) {
+            this.occupancy = occupancy;
+        }
+
+        int slotOf(int carId) {
+            Integer slot = slotByCar.get(carId);
+            if (slot == null) {
+                slot = occupancy.addSlot();
+                slotByCar.put(carId, slot);
+                carIds.add(carId);
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package rental;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The occupancy of the fleets of all companies at some point, in a memory
+ * mapped file, with the highest reservation id it contains: the watermark.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * header:   int MAGIC, int VERSION, int watermark, int companies
+ * company:  string name, int types
+ * type:     string name, int cars, int[cars] car ids,
+ *           int first day, int days, int words, long[days * words] rows
+ * string:   short length, UTF-8 bytes
+ * </pre>
+ * A row has a bit per car that is reserved on its day, see SlotOccupancy.
+ * Rows are read with a bulk copy, so loading costs about as much as reading
+ * the file.
+ */
+public final class OccupancySnapshot {
+
+    static final int MAGIC = 0x524f4353;
+    static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int watermark;
+    private final Map<String, FleetOccupancy> fleets;
+
+    private OccupancySnapshot(int watermark, Map<String, FleetOccupancy> fleets) {
+        this.watermark = watermark;
+        this.fleets = fleets;
+    }
+
+    public int getWatermark() {
+        return watermark;
+    }
+
+    public Map<String, FleetOccupancy> getFleets() {
+        return fleets;
+    }
+
+    /*********
+     * WRITE *
+     *********/
+
+    /**
+     * Write the fleets next to the file and move the result over it, so a
+     * crash never leaves half a snapshot behind.
+     */
+    public static void write(File file, int watermark, Collection<FleetOccupancy> fleets) throws IOException {
+        // copy the rows under the lock of every fleet, write them without
+        List<List<TypeRows>> copies = new ArrayList<List<TypeRows>>();
+        long size = 16;
+        for (FleetOccupancy fleet : fleets) {
+            final List<TypeRows> types = new ArrayList<TypeRows>();
+            fleet.read(new FleetOccupancy.Visitor() {
+                @Override
+                public void visit(String carType, List<Integer> carIds, SlotOccupancy occupancy) {
+                    types.add(new TypeRows(carType, carIds, occupancy));
+                }
+            });
+            copies.add(types);
+            size += 2 + fleet.getCompany().getBytes(UTF_8).length + 4;
+            for (TypeRows type : types) {
+                size += 2 + type.name.getBytes(UTF_8).length + 4 + 4L * type.carIds.length + 12
+                        + 8L * type.rows.length * words(type.carIds.length);
+            }
+        }
+
+        File temporary = new File(file.getPath() + ".tmp");
+        RandomAccessFile out = new RandomAccessFile(temporary, "rw");
+        try {
+            out.setLength(size);
+            MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(watermark).putInt(fleets.size());
+            int f = 0;
+            for (FleetOccupancy fleet : fleets) {
+                List<TypeRows> types = copies.get(f++);
+                putString(buffer, fleet.getCompany());
+                buffer.putInt(types.size());
+                for (TypeRows type : types) {
+                    int words = words(type.carIds.length);
+                    putString(buffer, type.name);
+                    buffer.putInt(type.carIds.length);
+                    for (int id : type.carIds) {
+                        buffer.putInt(id);
+                    }
+                    buffer.putInt(type.firstDay).putInt(type.rows.length).putInt(words);
+                    for (long[] row : type.rows) {
+                        for (int w = 0; w < words; w++) {
+                            buffer.putLong(row != null && w < row.length ? row[w] : 0L);
+                        }
+                    }
+                }
+            }
+            buffer.force();
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(file)) {
+            // renameTo does not replace on every platform
+            if (!file.delete() || !temporary.renameTo(file)) {
+                throw new IOException("Cannot replace " + file);
+            }
+        }
+    }
+
+    /********
+     * READ *
+     ********/
+
+    public static OccupancySnapshot read(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not an occupancy snapshot of this version: " + file);
+            }
+            int watermark = buffer.getInt();
+            int companies = buffer.getInt();
+            Map<String, FleetOccupancy> fleets = new LinkedHashMap<String, FleetOccupancy>();
+            for (int c = 0; c < companies; c++) {
+                FleetOccupancy fleet = new FleetOccupancy(getString(buffer));
+                int types = buffer.getInt();
+                for (int t = 0; t < types; t++) {
+                    String carType = getString(buffer);
+                    int[] ids = new int[buffer.getInt()];
+                    buffer.asIntBuffer().get(ids);
+                    buffer.position(buffer.position() + 4 * ids.length);
+                    int firstDay = buffer.getInt();
+                    long[][] rows = new long[buffer.getInt()][];
+                    int words = buffer.getInt();
+                    LongBuffer longs = buffer.asLongBuffer();
+                    for (int d = 0; d < rows.length; d++) {
+                        long[] row = new long[words];
+                        longs.get(row);
+                        rows[d] = isEmpty(row) ? null : row;
+                    }
+                    buffer.position(buffer.position() + 8 * rows.length * words);
+                    fleet.put(carType, ids, new SlotOccupancy(ids.length, firstDay, rows));
+                }
+                fleets.put(fleet.getCompany(), fleet);
+            }
+            return new OccupancySnapshot(watermark, fleets);
+        } catch (RuntimeException e) {
+            // a truncated or otherwise damaged file
+            throw new IOException("Cannot read occupancy snapshot " + file, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private static int words(int cars) {
+        return (cars + 63) >>> 6;
+    }
+
+    private static boolean isEmpty(long[] row) {
+        for (long word : row) {
+            if (word != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static final class TypeRows {
+
+        private final String name;
+        private final int[] carIds;
+        private final int firstDay;
+        private final long[][] rows;
+
+        TypeRows(String name, List<Integer> carIds, SlotOccupancy occupancy) {
+            this.name = name;
+            this.carIds = new int[carIds.size()];
+            for (int i = 0; i < this.carIds.length; i++) {
+                this.carIds[i] = carIds.get(i);
+            }
+            this.firstDay = occupancy.firstDay();
+            this.rows = occupancy.rows().clone();
+            for (int d = 0; d < rows.length; d++) {
+                rows[d] = rows[d] == null ? null : rows[d].clone();
+            }
+        }
+    }
+}
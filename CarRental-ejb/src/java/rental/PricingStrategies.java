@@ -0,0 +1,66 @@
+package rental;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The pricing strategy of every company, looked up once per company.
+ *
+ * A company with a pricing/[company name].properties resource is priced
+ * with the RateTablePricing loaded from it, other companies get
+ * FlatPricing. A strategy can also be registered programmatically.
+ */
+public final class PricingStrategies {
+
+    private static final Logger logger = Logger.getLogger(PricingStrategies.class.getName());
+    private static final PricingStrategy FLAT = new FlatPricing();
+    private static final ConcurrentMap<String, PricingStrategy> strategies = new ConcurrentHashMap<String, PricingStrategy>();
+
+    private PricingStrategies() {
+    }
+
+    public static PricingStrategy forCompany(String company) {
+        PricingStrategy strategy = strategies.get(company);
+        if (strategy == null) {
+            strategy = load(company);
+            PricingStrategy raced = strategies.putIfAbsent(company, strategy);
+            if (raced != null) {
+                strategy = raced;
+            }
+        }
+        return strategy;
+    }
+
+    public static void register(String company, PricingStrategy strategy) {
+        strategies.put(company, strategy);
+    }
+
+    private static PricingStrategy load(String company) {
+        InputStream in = PricingStrategies.class.getClassLoader().getResourceAsStream("pricing/" + company + ".properties");
+        if (in == null) {
+            return FLAT;
+        }
+        try {
+            Properties properties = new Properties();
+            properties.load(in);
+            return RateTablePricing.load(properties);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot load the rate tables of " + company + ", using flat pricing", e);
+            return FLAT;
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.WARNING, "Cannot load the rate tables of " + company + ", using flat pricing", e);
+            return FLAT;
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package rental;
+
+/**
+ * How a company prices its rentals. A rental from startDay until endDay is
+ * charged for the days startDay up to, not including, endDay.
+ *
+ * For the same period, a higher daily rate never gives a lower price: the
+ * search for the cheapest offers walks the car types by daily rate and stops
+ * early, see CarRentalCompany.getCheapestOffers.
+ *
+ * See PricingStrategies for how a company gets its strategy.
+ */
+public interface PricingStrategy {
+
+    /**
+     * @return the price of renting a car with the given daily rate
+     */
+    public double price(double rentalPricePerDay, int startDay, int endDay);
+
+    /**
+     * Price many rentals at once: prices[i] becomes the price of renting a
+     * car with daily rate ratesPerDay[i] from startDays[i] until endDays[i],
+     * for i below count.
+     */
+    public void priceAll(double[] ratesPerDay, int[] startDays, int[] endDays, double[] prices, int count);
+}
@@ -0,0 +1,166 @@
+package rental;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Properties;
+import java.util.TimeZone;
+
+/**
+ * The daily rate times a factor per day, times a discount on the length of
+ * the rental, rounded to cents.
+ *
+ * The factor of a day is the factor of its month (season) times the factor
+ * of its day of the week. Both are combined once into a table of running
+ * sums over the days of {@link #FIRST_DAY} and the {@link #DAYS} after it,
+ * so pricing a rental in that range is two lookups, whatever its length.
+ * The discounts are a table by length.
+ *
+ * Loaded from properties, every key is optional:
+ * <pre>
+ * # factor per month, January first
+ * season=1,1,1,1.1,1.1,1.2,1.4,1.4,1.2,1,1,1.2
+ * # factor per day of the week, Monday first
+ * weekday=1,1,1,1,1,1.15,1.15
+ * # discount from a length in days on: length:factor
+ * length=7:0.9,14:0.85,28:0.8
+ * </pre>
+ */
+public class RateTablePricing implements PricingStrategy {
+
+    // 1 January 2000
+    static final int FIRST_DAY = 10957;
+    static final int DAYS = 100 * 366;
+    static final int MAX_LENGTH = 366;
+
+    private final double[] seasons;
+    private final double[] weekdays;
+    // dayFactorSums[d] is the sum of the factors of the days before FIRST_DAY + d
+    private final double[] dayFactorSums = new double[DAYS + 1];
+    // lengthFactors[n] is the discount of a rental of n days
+    private final double[] lengthFactors = new double[MAX_LENGTH + 1];
+
+    public RateTablePricing(double[] seasons, double[] weekdays, int[] lengths, double[] discounts) {
+        if (seasons.length != 12 || weekdays.length != 7 || lengths.length != discounts.length) {
+            throw new IllegalArgumentException("Illegal rate tables");
+        }
+        // every discount holds from its length until the next one
+        for (int i = 1; i < lengths.length; i++) {
+            if (lengths[i] < lengths[i - 1]) {
+                throw new IllegalArgumentException("Rental lengths must be increasing: " + Arrays.toString(lengths));
+            }
+        }
+        this.seasons = seasons.clone();
+        this.weekdays = weekdays.clone();
+        for (int d = 0; d < DAYS; d++) {
+            dayFactorSums[d + 1] = dayFactorSums[d] + dayFactor(FIRST_DAY + d);
+        }
+        Arrays.fill(lengthFactors, 1);
+        for (int i = 0; i < lengths.length; i++) {
+            for (int n = Math.max(0, lengths[i]); n <= MAX_LENGTH; n++) {
+                lengthFactors[n] = discounts[i];
+            }
+        }
+    }
+
+    public static RateTablePricing load(Properties properties) {
+        double[] seasons = factors(properties.getProperty("season"), 12);
+        double[] weekdays = factors(properties.getProperty("weekday"), 7);
+        String[] pairs = properties.getProperty("length", "").trim().split("\\s*,\\s*");
+        int count = pairs[0].length() == 0 ? 0 : pairs.length;
+        int[] lengths = new int[count];
+        double[] discounts = new double[count];
+        for (int i = 0; i < count; i++) {
+            String[] pair = pairs[i].split(":");
+            lengths[i] = Integer.parseInt(pair[0].trim());
+            discounts[i] = Double.parseDouble(pair[1].trim());
+        }
+        return new RateTablePricing(seasons, weekdays, lengths, discounts);
+    }
+
+    /***********
+     * PRICING *
+     ***********/
+
+    @Override
+    public double price(double rentalPricePerDay, int startDay, int endDay) {
+        return cents(rentalPricePerDay * dayFactors(startDay, endDay) * lengthFactor(endDay - startDay));
+    }
+
+    /**
+     * Checks the whole batch against the tables first: when every period is
+     * inside them, which is the usual case, the prices are a single pass of
+     * lookups without a branch. Otherwise every period is priced on its own.
+     */
+    @Override
+    public void priceAll(double[] ratesPerDay, int[] startDays, int[] endDays, double[] prices, int count) {
+        // negative as soon as one period is outside of the tables
+        int inside = 0;
+        for (int i = 0; i < count; i++) {
+            int start = startDays[i] - FIRST_DAY;
+            int end = endDays[i] - FIRST_DAY;
+            inside |= start | (DAYS - end) | (end - start) | (MAX_LENGTH - (end - start));
+        }
+        if (inside < 0) {
+            for (int i = 0; i < count; i++) {
+                prices[i] = price(ratesPerDay[i], startDays[i], endDays[i]);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int start = startDays[i] - FIRST_DAY;
+            int end = endDays[i] - FIRST_DAY;
+            prices[i] = cents(ratesPerDay[i] * (dayFactorSums[end] - dayFactorSums[start]) * lengthFactors[end - start]);
+        }
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private double dayFactors(int startDay, int endDay) {
+        int start = startDay - FIRST_DAY;
+        int end = endDay - FIRST_DAY;
+        if (start >= 0 && end <= DAYS && start <= end) {
+            return dayFactorSums[end] - dayFactorSums[start];
+        }
+        double sum = 0;
+        for (int day = startDay; day < endDay; day++) {
+            sum += dayFactor(day);
+        }
+        return sum;
+    }
+
+    private double lengthFactor(int length) {
+        return lengthFactors[Math.max(0, Math.min(length, MAX_LENGTH))];
+    }
+
+    // only used to build the table and for days outside of it
+    private double dayFactor(int epochDay) {
+        Calendar day = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        day.setTimeInMillis(epochDay * 24L * 60 * 60 * 1000);
+        // Calendar.SUNDAY is 1, Monday becomes 0
+        int weekday = (day.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+        return seasons[day.get(Calendar.MONTH)] * weekdays[weekday];
+    }
+
+    private static double cents(double price) {
+        return Math.round(price * 100) / 100D;
+    }
+
+    private static double[] factors(String list, int count) {
+        double[] factors = new double[count];
+        if (list == null) {
+            Arrays.fill(factors, 1);
+            return factors;
+        }
+        String[] values = list.trim().split("\\s*,\\s*");
+        if (values.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " factors: " + list);
+        }
+        for (int i = 0; i < count; i++) {
+            factors[i] = Double.parseDouble(values[i]);
+        }
+        return factors;
+    }
+}
@@ -0,0 +1,84 @@
+package rental;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Number of reservations of one car type at one company.
+ *
+ * The count of a type is spread over STRIPES rows, a booking only updates the
+ * row of its car. Bookings of different cars of the same type thus rarely
+ * wait on the same row, and reading a count sums a handful of rows.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"RENTALCOMPANY", "CARTYPE", "STRIPE"}))
+@NamedQueries({
+    @NamedQuery(name = "ReservationCounter.add",
+            query = "UPDATE ReservationCounter c SET c.total = c.total + :delta "
+            + "WHERE c.rentalCompany = :company AND c.carType = :carType AND c.stripe = :stripe"),
+    @NamedQuery(name = "ReservationCounter.countStripes",
+            query = "SELECT COUNT(c) FROM ReservationCounter c "
+            + "WHERE c.rentalCompany = :company AND c.carType = :carType"),
+    @NamedQuery(name = "ReservationCounter.totalOfCarType",
+            query = "SELECT SUM(c.total) FROM ReservationCounter c "
+            + "WHERE c.rentalCompany = :company AND c.carType = :carType"),
+    @NamedQuery(name = "ReservationCounter.totalsPerCompany",
+            query = "SELECT c.rentalCompany, SUM(c.total) AS companyTotal FROM ReservationCounter c "
+            + "GROUP BY c.rentalCompany ORDER BY companyTotal DESC"),
+    @NamedQuery(name = "ReservationCounter.totalsPerCarType",
+            query = "SELECT c.carType, SUM(c.total) AS typeTotal FROM ReservationCounter c "
+            + "WHERE c.rentalCompany = :company GROUP BY c.carType ORDER BY typeTotal DESC")
+})
+public class ReservationCounter {
+
+    public static final int STRIPES = 8;
+
+    @Id @GeneratedValue
+    private int id;
+    private String rentalCompany;
+    private String carType;
+    private int stripe;
+    private long total;
+
+    public ReservationCounter() {
+    }
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public ReservationCounter(String rentalCompany, String carType, int stripe) {
+        this.rentalCompany = rentalCompany;
+        this.carType = carType;
+        this.stripe = stripe;
+    }
+
+    public static int stripeOf(int carId) {
+        return (carId & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getRentalCompany() {
+        return rentalCompany;
+    }
+
+    public String getCarType() {
+        return carType;
+    }
+
+    public int getStripe() {
+        return stripe;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,165 @@
+package rental;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Interval index over the reservations of a single car.
+ *
+ * Reservations are kept sorted on their start day, together with a running
+ * maximum of the end days. A period [start, end] overlaps some reservation
+ * iff the reservations starting on or before end reach up to start, so an
+ * overlap query is one binary search: O(log n). Adding or removing shifts
+ * the arrays, which is cheap compared to the number of availability checks.
+ */
+class ReservationIndex {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] starts;
+    private int[] ends;
+    // maxEnds[i] is the largest end of the reservations 0..i
+    private int[] maxEnds;
+    private Reservation[] reservations;
+    private int size;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    ReservationIndex() {
+        this(INITIAL_CAPACITY);
+    }
+
+    ReservationIndex(Collection<Reservation> reservations) {
+        this(Math.max(INITIAL_CAPACITY, reservations.size()));
+        for (Reservation reservation : reservations) {
+            this.reservations[size] = reservation;
+            size++;
+        }
+        Arrays.sort(this.reservations, 0, size, new Comparator<Reservation>() {
+            @Override
+            public int compare(Reservation r1, Reservation r2) {
+                return r1.getStartDay() < r2.getStartDay() ? -1 : (r1.getStartDay() == r2.getStartDay() ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < size; i++) {
+            starts[i] = this.reservations[i].getStartDay();
+            ends[i] = this.reservations[i].getEndDay();
+        }
+        updateMaxEnds(0);
+    }
+
+    private ReservationIndex(int capacity) {
+        starts = new int[capacity];
+        ends = new int[capacity];
+        maxEnds = new int[capacity];
+        reservations = new Reservation[capacity];
+    }
+
+    /***********
+     * QUERIES *
+     ***********/
+
+    /**
+     * Check whether some indexed reservation shares at least one day with
+     * the given period (bounds included).
+     */
+    boolean overlaps(int start, int end) {
+        int last = upperBound(end) - 1;
+        return last >= 0 && maxEnds[last] >= start;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /***********
+     * UPDATES *
+     ***********/
+
+    void add(Reservation reservation) {
+        ensureCapacity(size + 1);
+        int start = reservation.getStartDay();
+        int pos = upperBound(start);
+        int moved = size - pos;
+        System.arraycopy(starts, pos, starts, pos + 1, moved);
+        System.arraycopy(ends, pos, ends, pos + 1, moved);
+        System.arraycopy(reservations, pos, reservations, pos + 1, moved);
+        starts[pos] = start;
+        ends[pos] = reservation.getEndDay();
+        reservations[pos] = reservation;
+        size++;
+        updateMaxEnds(pos);
+    }
+
+    boolean remove(Reservation reservation) {
+        int start = reservation.getStartDay();
+        // only reservations with the same start can be equal
+        for (int i = lowerBound(start); i < size && starts[i] == start; i++) {
+            if (reservations[i].equals(reservation)) {
+                int moved = size - i - 1;
+                System.arraycopy(starts, i + 1, starts, i, moved);
+                System.arraycopy(ends, i + 1, ends, i, moved);
+                System.arraycopy(reservations, i + 1, reservations, i, moved);
+                size--;
+                reservations[size] = null;
+                updateMaxEnds(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    // index of the first start >= key
+    private int lowerBound(int key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // index of the first start > key
+    private int upperBound(int key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void updateMaxEnds(int from) {
+        int max = from == 0 ? Integer.MIN_VALUE : maxEnds[from - 1];
+        for (int i = from; i < size; i++) {
+            max = Math.max(max, ends[i]);
+            maxEnds[i] = max;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= starts.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, starts.length * 2);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        maxEnds = Arrays.copyOf(maxEnds, newCapacity);
+        reservations = Arrays.copyOf(reservations, newCapacity);
+    }
+}
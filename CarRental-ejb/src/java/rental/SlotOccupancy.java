@@ -0,0 +1,163 @@
+package rental;
+
+import java.util.Arrays;
+
+/**
+ * Day-granular occupancy of a number of slots, one per car.
+ *
+ * For every day we keep a bitset with the slots that are reserved on that
+ * day. A slot is free for a period iff its bit is clear on every day of the
+ * period, so OR-ing the rows of the period gives all busy slots at once, 64
+ * per word. Marking a period twice is harmless, so reservations may be
+ * replayed.
+ */
+class SlotOccupancy {
+
+    // busy[day - firstDay] has a bit per slot, a null row means all slots are free
+    private long[][] busy = new long[0][];
+    private int firstDay;
+    private int size;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    SlotOccupancy() {
+    }
+
+    // rows as written by rows(), see OccupancySnapshot
+    SlotOccupancy(int size, int firstDay, long[][] busy) {
+        this.size = size;
+        this.firstDay = firstDay;
+        this.busy = busy;
+    }
+
+    /*********
+     * SLOTS *
+     *********/
+
+    int addSlot() {
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int firstDay() {
+        return firstDay;
+    }
+
+    long[][] rows() {
+        return busy;
+    }
+
+    /**
+     * Mark the slot reserved on every day from startDay until endDay (both
+     * included).
+     */
+    void mark(int slot, int startDay, int endDay) {
+        ensureDays(startDay, endDay);
+        int word = slot >>> 6;
+        long bit = 1L << slot;
+        for (int day = startDay; day <= endDay; day++) {
+            long[] row = busy[day - firstDay];
+            if (row == null || row.length <= word) {
+                row = row == null ? new long[wordCount()] : Arrays.copyOf(row, wordCount());
+                busy[day - firstDay] = row;
+            }
+            row[word] |= bit;
+        }
+    }
+
+    /**
+     * Forget the days before the given one.
+     */
+    void dropBefore(int day) {
+        int dropped = Math.min(day - firstDay, busy.length);
+        if (dropped <= 0) {
+            return;
+        }
+        busy = Arrays.copyOfRange(busy, dropped, busy.length);
+        firstDay += dropped;
+    }
+
+    /****************
+     * AVAILABILITY *
+     ****************/
+
+    /**
+     * Check whether at least one slot is free on every day from startDay
+     * until endDay (both included).
+     */
+    boolean hasFree(int startDay, int endDay) {
+        int words = wordCount();
+        for (int w = 0; w < words; w++) {
+            long taken = busyWord(w, startDay, endDay) | ~validBits(w);
+            if (taken != -1L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of slots that are free on every day from startDay
+     * until endDay (both included)
+     */
+    int countFree(int startDay, int endDay) {
+        int free = 0;
+        int words = wordCount();
+        for (int w = 0; w < words; w++) {
+            free += Long.bitCount(~busyWord(w, startDay, endDay) & validBits(w));
+        }
+        return free;
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private int wordCount() {
+        return (size + 63) >>> 6;
+    }
+
+    // mask of the slots in use in word w
+    private long validBits(int w) {
+        int used = size - (w << 6);
+        return used >= 64 ? -1L : (1L << used) - 1;
+    }
+
+    private long busyWord(int w, int startDay, int endDay) {
+        long taken = 0L;
+        int from = Math.max(startDay, firstDay);
+        int to = Math.min(endDay, firstDay + busy.length - 1);
+        for (int day = from; day <= to && taken != -1L; day++) {
+            long[] row = busy[day - firstDay];
+            if (row != null && w < row.length) {
+                taken |= row[w];
+            }
+        }
+        return taken;
+    }
+
+    private void ensureDays(int startDay, int endDay) {
+        if (busy.length == 0) {
+            firstDay = startDay;
+            busy = new long[endDay - startDay + 1][];
+            return;
+        }
+        int lastDay = firstDay + busy.length - 1;
+        if (startDay >= firstDay && endDay <= lastDay) {
+            return;
+        }
+        // grow with some slack, bookings tend to creep forward day by day
+        int slack = Math.max(busy.length / 2, 32);
+        int newFirst = startDay < firstDay ? Math.min(startDay, firstDay - slack) : firstDay;
+        int newLast = endDay > lastDay ? Math.max(endDay, lastDay + slack) : lastDay;
+        long[][] grown = new long[newLast - newFirst + 1][];
+        System.arraycopy(busy, 0, grown, firstDay - newFirst, busy.length);
+        busy = grown;
+        firstDay = newFirst;
+    }
+}
@@ -0,0 +1,255 @@
+package session;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import rental.CarType;
+import rental.EpochDays;
+
+/**
+ * Server-wide cache of the car types a company has available in a period.
+ *
+ * Entries are evicted least recently used first and expire after a while.
+ * Callers that change the reservations or the fleet of a company invalidate
+ * the affected entries once their transaction has committed. A result that
+ * was computed while such an invalidation happened is not stored, see
+ * {@link #getGeneration(String)}.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AvailabilityCache {
+
+    static final int MAX_ENTRIES = 10000;
+    static final long TIME_TO_LIVE = 60 * 1000;
+
+    @Resource
+    TransactionSynchronizationRegistry transactions;
+
+    private final LinkedHashMap<Key, CachedTypes> entries = new LinkedHashMap<Key, CachedTypes>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedTypes> eldest) {
+            if (size() <= MAX_ENTRIES) {
+                return false;
+            }
+            keysOf(eldest.getKey().company).remove(eldest.getKey());
+            evictions++;
+            return true;
+        }
+    };
+    // keys per company, so invalidation does not walk the whole cache
+    private final Map<String, Set<Key>> companyKeys = new HashMap<String, Set<Key>>();
+    private final Map<String, Long> generations = new HashMap<String, Long>();
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**********
+     * LOOKUP *
+     **********/
+
+    /**
+     * @return the cached available car types, or null if they have to be
+     * computed
+     */
+    public synchronized Set<CarType> get(String company, Date start, Date end) {
+        Key key = new Key(company, start, end);
+        CachedTypes entry = entries.get(key);
+        if (entry == null || entry.expires < System.currentTimeMillis()) {
+            if (entry != null) {
+                remove(key);
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.carTypes;
+    }
+
+    /**
+     * Current generation of the cached data of a company. Take it before
+     * computing a result and hand it back to put: if the company changed in
+     * the meantime the result is dropped.
+     */
+    public synchronized long getGeneration(String company) {
+        Long generation = generations.get(company);
+        return generation == null ? 0 : generation;
+    }
+
+    public synchronized void put(String company, Date start, Date end, Set<CarType> carTypes, long generation) {
+        if (generation != getGeneration(company)) {
+            return;
+        }
+        Key key = new Key(company, start, end);
+        entries.put(key, new CachedTypes(Collections.unmodifiableSet(new HashSet<CarType>(carTypes)),
+                System.currentTimeMillis() + TIME_TO_LIVE));
+        keysOf(company).add(key);
+    }
+
+    /****************
+     * INVALIDATION *
+     ****************/
+
+    /**
+     * Drop the entries of the company whose period overlaps the given one.
+     */
+    public synchronized void invalidate(String company, Date start, Date end) {
+        nextGeneration(company);
+        int startDay = EpochDays.fromDate(start);
+        int endDay = EpochDays.fromDate(end);
+        Iterator<Key> keys = keysOf(company).iterator();
+        while (keys.hasNext()) {
+            Key key = keys.next();
+            if (key.startDay <= endDay && key.endDay >= startDay) {
+                entries.remove(key);
+                keys.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Drop all entries of the company.
+     */
+    public synchronized void invalidate(String company) {
+        nextGeneration(company);
+        Set<Key> keys = keysOf(company);
+        for (Key key : keys) {
+            entries.remove(key);
+        }
+        invalidations += keys.size();
+        keys.clear();
+    }
+
+    /**
+     * Invalidate the period once the current transaction commits, or right
+     * away outside of a transaction.
+     */
+    public void invalidateOnCommit(final String company, final Date start, final Date end) {
+        if (transactions.getTransactionKey() == null) {
+            invalidate(company, start, end);
+            return;
+        }
+        transactions.registerInterposedSynchronization(new AfterCommit() {
+            @Override
+            void committed() {
+                invalidate(company, start, end);
+            }
+        });
+    }
+
+    public void invalidateOnCommit(final String company) {
+        if (transactions.getTransactionKey() == null) {
+            invalidate(company);
+            return;
+        }
+        transactions.registerInterposedSynchronization(new AfterCommit() {
+            @Override
+            void committed() {
+                invalidate(company);
+            }
+        });
+    }
+
+    /**************
+     * STATISTICS *
+     **************/
+
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits, misses, evictions, invalidations, entries.size(), MAX_ENTRIES);
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private void remove(Key key) {
+        entries.remove(key);
+        keysOf(key.company).remove(key);
+    }
+
+    private Set<Key> keysOf(String company) {
+        Set<Key> keys = companyKeys.get(company);
+        if (keys == null) {
+            keys = new HashSet<Key>();
+            companyKeys.put(company, keys);
+        }
+        return keys;
+    }
+
+    private void nextGeneration(String company) {
+        generations.put(company, getGeneration(company) + 1);
+    }
+
+    private static final class Key {
+
+        private final String company;
+        private final int startDay;
+        private final int endDay;
+
+        Key(String company, Date start, Date end) {
+            this.company = company;
+            this.startDay = EpochDays.fromDate(start);
+            this.endDay = EpochDays.fromDate(end);
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + company.hashCode();
+            result = prime * result + startDay;
+            result = prime * result + endDay;
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return startDay == other.startDay && endDay == other.endDay && company.equals(other.company);
+        }
+    }
+
+    private static final class CachedTypes {
+
+        private final Set<CarType> carTypes;
+        private final long expires;
+
+        CachedTypes(Set<CarType> carTypes, long expires) {
+            this.carTypes = carTypes;
+            this.expires = expires;
+        }
+    }
+
+    private abstract static class AfterCommit implements Synchronization {
+
+        abstract void committed();
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == Status.STATUS_COMMITTED) {
+                committed();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package session;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import rental.CarRentalCompany;
+import rental.CarType;
+import rental.EpochDays;
+import rental.ReservationException;
+
+/**
+ * Availability answered by the database: a car is free when no reservation
+ * on it overlaps the period (see the named queries on Car). Nothing but the
+ * answer is loaded, however long the reservation history of the company.
+ *
+ * Whether there is a free car at all is answered from memory, see
+ * OccupancyStore. Like the AvailabilityCache it only knows committed
+ * bookings, those of other servers a few seconds late; which cars are free
+ * is always asked to the database.
+ */
+@Stateless
+public class AvailabilityQueries {
+
+    @PersistenceContext
+    EntityManager em;
+    @EJB
+    CatalogCache catalogCache;
+    @EJB
+    OccupancyStore occupancyStore;
+
+    public Set<CarType> getAvailableCarTypes(String company, Date start, Date end) {
+        checkPeriod(start, end);
+        CarRentalCompany crc = catalogCache.findCompany(em, company);
+        Set<CarType> out = new HashSet<CarType>();
+        if (crc == null) {
+            return out;
+        }
+        for (String carType : occupancyStore.getOccupancy(company)
+                .getAvailableCarTypes(EpochDays.fromDate(start), EpochDays.fromDate(end))) {
+            out.add(crc.getType(carType));
+        }
+        return out;
+    }
+
+    public boolean isAvailable(String company, String carType, Date start, Date end) {
+        checkPeriod(start, end);
+        return occupancyStore.getOccupancy(company)
+                .hasFreeCar(carType, EpochDays.fromDate(start), EpochDays.fromDate(end));
+    }
+
+    public int countAvailableCars(String company, String carType, Date start, Date end) {
+        checkPeriod(start, end);
+        return occupancyStore.getOccupancy(company)
+                .countFreeCars(carType, EpochDays.fromDate(start), EpochDays.fromDate(end));
+    }
+
+    public List<Integer> getAvailableCarIds(String company, String carType, Date start, Date end) {
+        return findAvailableCarIds(company, carType, start, end, Integer.MAX_VALUE);
+    }
+
+    private List<Integer> findAvailableCarIds(String company, String carType, Date start, Date end, int max) {
+        checkPeriod(start, end);
+        return em.createNamedQuery("Car.availableIds", Integer.class)
+                .setParameter("company", company)
+                .setParameter("carType", carType)
+                .setParameter("startDay", EpochDays.fromDate(start))
+                .setParameter("endDay", EpochDays.fromDate(end))
+                .setMaxResults(max)
+                .getResultList();
+    }
+
+    /**
+     * Refuse a period that cannot be asked for: reversed, or starting before
+     * the archive horizon. Called first by the entry points of clients, so
+     * the refusal is an application exception; inside, the same check throws
+     * an IllegalArgumentException.
+     */
+    static void checkQuotable(Date start, Date end) throws ReservationException {
+        try {
+            checkPeriod(start, end);
+        } catch (IllegalArgumentException e) {
+            throw new ReservationException(e.getMessage());
+        }
+    }
+
+    private static void checkPeriod(Date start, Date end) {
+        if (!start.before(end)) {
+            throw new IllegalArgumentException("Illegal given period");
+        }
+        // the reservations before the horizon are archived and not looked at
+        if (EpochDays.fromDate(start) < ReservationArchiver.horizon()) {
+            throw new IllegalArgumentException("Period starts before the archive horizon");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package session;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.Future;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import rental.CarType;
+
+/**
+ * Computes the availability of a single company on the container's
+ * asynchronous thread pool, so a session can ask all companies at once.
+ */
+@Stateless
+public class AvailabilityWorker {
+
+    @EJB
+    AvailabilityCache availabilityCache;
+    @EJB
+    AvailabilityQueries availabilityQueries;
+
+    @Asynchronous
+    public Future<Set<CarType>> getAvailableCarTypes(String company, Date start, Date end) {
+        long generation = availabilityCache.getGeneration(company);
+        Set<CarType> carTypes = availabilityQueries.getAvailableCarTypes(company, start, end);
+        availabilityCache.put(company, start, end, carTypes, generation);
+        return new AsyncResult<Set<CarType>>(carTypes);
+    }
+}
@@ -1,75 +1,351 @@
 package session;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Remove;
 import javax.ejb.SessionContext;
 import javax.ejb.Stateful;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.interceptor.Interceptors;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import rental.BookingJournal;
 import rental.CarRentalCompany;
 import rental.CarType;
+import rental.CarTypeFilter;
+import rental.EpochDays;
+import rental.Offer;
 import rental.Quote;
+import rental.QuoteRequest;
+import rental.QuoteResult;
 import rental.Reservation;
 import rental.ReservationConstraints;
 import rental.ReservationException;
 
 @Stateful
+@Interceptors(MetricsInterceptor.class)
 public class CarRentalSession implements CarRentalSessionRemote {
+    private static final Logger logger = Logger.getLogger(CarRentalSession.class.getName());
     @Resource
     SessionContext context;
+    @EJB
+    AvailabilityCache availabilityCache;
+    @EJB
+    AvailabilityWorker availabilityWorker;
+    @EJB
+    AvailabilityQueries availabilityQueries;
+    @EJB
+    ReservationBooker reservationBooker;
+    @EJB
+    InventoryHolds inventoryHolds;
+    @EJB
+    CatalogCache catalogCache;
     private String renter;
     private List<Quote> quotes = new LinkedList<Quote>();
+    // whether quoting holds capacity until confirming, see InventoryHolds
+    private boolean holdQuotes;
+    private long holdOwner;
+
+    @PostConstruct
+    void createHoldOwner() {
+        holdOwner = inventoryHolds.newOwner();
+    }
+
+    @PreDestroy
+    void releaseHolds() {
+        inventoryHolds.release(holdOwner);
+    }
 
     @Override
     public Set<String> getAllRentalCompanies() {
-        return new HashSet<String>(em.createQuery("SELECT crc.name FROM CarRentalCompany crc").getResultList());
+        return new HashSet<String>(catalogCache.getCompanyNames());
 
     }
     
     @Override
-    public List<CarType> getAvailableCarTypes(Date start, Date end) {
-        List<CarType> availableCarTypes = new LinkedList<CarType>();
+    public List<CarType> getAvailableCarTypes(Date start, Date end) throws ReservationException {
+        Set<CarType> availableCarTypes = new LinkedHashSet<CarType>();
+        for (Set<CarType> ofCompany : getAvailableCarTypesPerCompany(start, end).values()) {
+            availableCarTypes.addAll(ofCompany);
+        }
+        return new ArrayList<CarType>(availableCarTypes);
+    }
+
+    @Override
+    public List<Quote> getAvailableQuotes(Date start, Date end) throws ReservationException {
+        int startDay = EpochDays.fromDate(start);
+        int endDay = EpochDays.fromDate(end);
+        List<Quote> out = new ArrayList<Quote>();
+        for (Map.Entry<String, Set<CarType>> ofCompany : getAvailableCarTypesPerCompany(start, end).entrySet()) {
+            CarRentalCompany crc = catalogCache.findCompany(em, ofCompany.getKey());
+            out.addAll(crc.priceQuotes(ofCompany.getValue(), startDay, endDay, renter));
+        }
+        return out;
+    }
+
+    @Override
+    public List<Offer> getCheapestOffers(Date start, Date end, CarTypeFilter filter, int limit)
+            throws ReservationException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Illegal number of offers: " + limit);
+        }
+        int startDay = EpochDays.fromDate(start);
+        int endDay = EpochDays.fromDate(end);
+        // the most expensive offer kept is on top, it goes when a cheaper one comes
+        PriorityQueue<Offer> cheapest = new PriorityQueue<Offer>(limit, Collections.reverseOrder());
+        for (Map.Entry<String, Set<CarType>> ofCompany : getAvailableCarTypesPerCompany(start, end).entrySet()) {
+            double maxPrice = cheapest.size() < limit ? Double.MAX_VALUE : cheapest.peek().getPrice();
+            CarRentalCompany crc = catalogCache.findCompany(em, ofCompany.getKey());
+            for (Offer offer : crc.getCheapestOffers(catalogCache.getCarTypeIndex(crc), filter, ofCompany.getValue(), startDay, endDay, limit, maxPrice)) {
+                cheapest.add(offer);
+                if (cheapest.size() > limit) {
+                    cheapest.poll();
+                }
+            }
+        }
+        List<Offer> out = new ArrayList<Offer>(cheapest);
+        Collections.sort(out);
+        return out;
+    }
+
+    private Map<String, Set<CarType>> getAvailableCarTypesPerCompany(Date start, Date end)
+            throws ReservationException {
+        AvailabilityQueries.checkQuotable(start, end);
+        Map<String, Set<CarType>> out = new LinkedHashMap<String, Set<CarType>>();
+        // cached companies are answered right away, the others all at once
+        List<String> pendingCompanies = new ArrayList<String>();
+        List<Future<Set<CarType>>> pending = new ArrayList<Future<Set<CarType>>>();
         for(String crc : getAllRentalCompanies()) {
-            for(CarType ct : em.find(CarRentalCompany.class,crc).getAvailableCarTypes(start, end)) {
-                if(!availableCarTypes.contains(ct))
-                    availableCarTypes.add(ct);
+            Set<CarType> cached = availabilityCache.get(crc, start, end);
+            if (cached != null) {
+                out.put(crc, withoutHeld(crc, cached, start, end));
+            } else {
+                pendingCompanies.add(crc);
+                pending.add(availabilityWorker.getAvailableCarTypes(crc, start, end));
             }
         }
-        return availableCarTypes;
+        for (int i = 0; i < pending.size(); i++) {
+            out.put(pendingCompanies.get(i), withoutHeld(pendingCompanies.get(i), waitFor(pending.get(i)), start, end));
+        }
+        return out;
+    }
+
+    // the cache knows nothing of holds, types held by others are checked here
+    private Set<CarType> withoutHeld(String company, Set<CarType> carTypes, Date start, Date end) {
+        Map<String, Integer> held = inventoryHolds.getHeldCarTypes(holdOwner, company, start, end);
+        if (held.isEmpty()) {
+            return carTypes;
+        }
+        Set<CarType> out = new HashSet<CarType>();
+        for (CarType carType : carTypes) {
+            Integer heldCars = held.get(carType.getName());
+            if (heldCars == null
+                    || availabilityQueries.countAvailableCars(company, carType.getName(), start, end) > heldCars) {
+                out.add(carType);
+            }
+        }
+        return out;
+    }
+
+    private Set<CarType> waitFor(Future<Set<CarType>> carTypes) {
+        try {
+            return carTypes.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EJBException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EJBException((Exception) cause);
+        }
     }
 
     @Override
     public Quote createQuote(String company, ReservationConstraints constraints) throws ReservationException {
-        Quote out = em.find(CarRentalCompany.class,company).createQuote(constraints, renter);
+        AvailabilityQueries.checkQuotable(constraints.getStartDate(), constraints.getEndDate());
+        Quote out = catalogCache.findCompany(em, company).priceQuote(constraints, renter);
+        if (!reserveCapacity(company, constraints)) {
+            throw new ReservationException("<" + company
+                    + "> No cars available to satisfy the given constraints.");
+        }
+        BookingJournal.quoted(out);
         quotes.add(out);
         return out;
     }
 
+    private boolean reserveCapacity(String company, ReservationConstraints constraints) {
+        String carType = constraints.getCarType();
+        Date start = constraints.getStartDate();
+        Date end = constraints.getEndDate();
+        if (!holdQuotes && inventoryHolds.getHeld(holdOwner, company, carType, start, end) == 0) {
+            return availabilityQueries.isAvailable(company, carType, start, end);
+        }
+        return hasUnheldCar(company, carType, start, end,
+                availabilityQueries.countAvailableCars(company, carType, start, end), 0);
+    }
+
+    /**
+     * Whether a free car is left over by the holds of other sessions. When
+     * this session holds its quotes it takes the car, holding it.
+     *
+     * @param promisedCars the free cars promised to other legs of the same
+     * trip; when holding, their holds are counted already
+     */
+    private boolean hasUnheldCar(String company, String carType, Date start, Date end, int freeCars,
+            int promisedCars) {
+        if (holdQuotes) {
+            return inventoryHolds.hold(holdOwner, company, carType, start, end, freeCars);
+        }
+        return freeCars - promisedCars > inventoryHolds.getHeld(holdOwner, company, carType, start, end);
+    }
+
+    @Override
+    public List<QuoteResult> createQuotes(List<QuoteRequest> requests) {
+        // group the legs per company, so every company is loaded once
+        Map<String, List<Integer>> legsPerCompany = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < requests.size(); i++) {
+            String company = requests.get(i).getRentalCompany();
+            List<Integer> legs = legsPerCompany.get(company);
+            if (legs == null) {
+                legs = new ArrayList<Integer>();
+                legsPerCompany.put(company, legs);
+            }
+            legs.add(i);
+        }
+        QuoteResult[] results = new QuoteResult[requests.size()];
+        for (Map.Entry<String, List<Integer>> entry : legsPerCompany.entrySet()) {
+            CarRentalCompany crc = catalogCache.findCompany(em, entry.getKey());
+            List<ReservationConstraints> legs = new ArrayList<ReservationConstraints>();
+            for (int leg : entry.getValue()) {
+                legs.add(requests.get(leg).getConstraints());
+            }
+            // the car promised to every leg, by its index in legs
+            Integer[] promised = new Integer[legs.size()];
+            for (int i = 0; i < legs.size(); i++) {
+                results[entry.getValue().get(i)] = crc == null
+                        ? new QuoteResult("No car rental company named " + entry.getKey())
+                        : createQuote(crc, legs, i, promised);
+            }
+        }
+        for (QuoteResult result : results) {
+            if (result.isSuccess()) {
+                BookingJournal.quoted(result.getQuote());
+                quotes.add(result.getQuote());
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Quote one leg of a trip. Legs of the same car type that share a day
+     * need different cars, so the leg is promised a free car that is not yet
+     * promised to an overlapping earlier leg of the company.
+     *
+     * Cars are promised greedily in the order of the legs and never moved
+     * afterwards. When free cars differ between the legs, a leg can be refused
+     * although another assignment would serve the whole trip; booking picks
+     * its own cars anyway, so this only errs on the side of refusing.
+     */
+    private QuoteResult createQuote(CarRentalCompany crc, List<ReservationConstraints> legs, int leg,
+            Integer[] promised) {
+        ReservationConstraints constraints = legs.get(leg);
+        try {
+            AvailabilityQueries.checkQuotable(constraints.getStartDate(), constraints.getEndDate());
+            Quote quote = crc.priceQuote(constraints, renter);
+            int startDay = constraints.getStartDay();
+            int endDay = constraints.getEndDay();
+            List<Integer> availableCars = availabilityQueries.getAvailableCarIds(crc.getName(), constraints.getCarType(),
+                    constraints.getStartDate(), constraints.getEndDate());
+            Set<Integer> taken = new HashSet<Integer>();
+            for (int i = 0; i < leg; i++) {
+                ReservationConstraints other = legs.get(i);
+                if (promised[i] != null && other.getStartDay() <= endDay && other.getEndDay() >= startDay) {
+                    taken.add(promised[i]);
+                }
+            }
+            Integer carId = null;
+            int takenCars = 0;
+            for (Integer availableCar : availableCars) {
+                if (taken.contains(availableCar)) {
+                    takenCars++;
+                } else if (carId == null) {
+                    carId = availableCar;
+                }
+            }
+            if (carId == null || !hasUnheldCar(crc.getName(), constraints.getCarType(), constraints.getStartDate(),
+                    constraints.getEndDate(), availableCars.size(), takenCars)) {
+                return new QuoteResult("<" + crc.getName()
+                        + "> No cars available to satisfy the given constraints.");
+            }
+            promised[leg] = carId;
+            return new QuoteResult(quote);
+        } catch (ReservationException e) {
+            return new QuoteResult(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return new QuoteResult(e.getMessage());
+        }
+    }
+
     @Override
     public List<Quote> getCurrentQuotes() {
         return quotes;
     }
 
-    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    // every attempt runs in a transaction of its own, see ReservationBooker
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     @Override
     public List<Reservation> confirmQuotes() throws ReservationException {
-        List<Reservation> done = new LinkedList<Reservation>();
-        try{    
-        for (Quote quote : quotes) {
-                done.add(em.find(CarRentalCompany.class, quote.getRentalCompany()).confirmQuote(quote));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Reservation> reservations = reservationBooker.book(quotes, holdOwner);
+                inventoryHolds.release(holdOwner);
+                for (Reservation reservation : reservations) {
+                    BookingJournal.confirmed(reservation);
+                }
+                return reservations;
+            } catch (EJBException e) {
+                if (attempt >= ReservationBooker.MAX_ATTEMPTS || !ReservationBooker.isConflict(e)) {
+                    throw e;
+                }
+                logger.log(Level.FINE, "Booking conflict for {0}, attempt {1} of {2}",
+                        new Object[]{renter, attempt, ReservationBooker.MAX_ATTEMPTS});
             }
-        }catch(ReservationException e){for(Reservation r:done)
-               context.setRollbackOnly();
-        throw e;
         }
-        return done;
+    }
+
+    @Remove
+    @Override
+    public void remove() {
+    }
+
+    @Override
+    public void setHoldQuotes(boolean holdQuotes) {
+        this.holdQuotes = holdQuotes;
     }
 
     @Override
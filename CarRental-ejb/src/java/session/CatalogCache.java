@@ -0,0 +1,177 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import rental.CarRentalCompany;
+import rental.CarTypeIndex;
+
+/**
+ * The read-mostly catalog: the companies and their car types, and the list
+ * of company names.
+ *
+ * Companies and car types live in the shared cache of the persistence unit,
+ * see persistence.xml; cars and reservations are left out of it, they change
+ * with every booking. The name list and the car type index of every company
+ * are kept here. Changes to the catalog drop the company from the shared
+ * cache, its index and the name list once their transaction completes, see
+ * {@link #invalidateOnCompletion(String)}.
+ *
+ * Set rental.catalog.cache=false to bypass the cache, e.g. to compare.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CatalogCache {
+
+    static final boolean ENABLED = !"false".equals(System.getProperty("rental.catalog.cache"));
+
+    @Resource
+    TransactionSynchronizationRegistry transactions;
+    @PersistenceContext
+    EntityManager em;
+
+    private List<String> companyNames;
+    private final ConcurrentMap<String, CarTypeIndex> carTypeIndexes = new ConcurrentHashMap<String, CarTypeIndex>();
+    private long generation;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**********
+     * LOOKUP *
+     **********/
+
+    public List<String> getCompanyNames() {
+        long before;
+        synchronized (this) {
+            if (companyNames != null) {
+                hits.incrementAndGet();
+                return companyNames;
+            }
+            before = generation;
+        }
+        misses.incrementAndGet();
+        List<String> names = Collections.unmodifiableList(new ArrayList<String>(
+                em.createQuery("SELECT crc.name FROM CarRentalCompany crc", String.class).getResultList()));
+        synchronized (this) {
+            // a company added in the meantime may be missing
+            if (ENABLED && before == generation) {
+                companyNames = names;
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Find the company through the shared cache of the given entity manager.
+     */
+    public CarRentalCompany findCompany(EntityManager em, String name) {
+        Cache cache = em.getEntityManagerFactory().getCache();
+        if (!ENABLED) {
+            cache.evict(CarRentalCompany.class, name);
+        }
+        if (cache.contains(CarRentalCompany.class, name)) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return em.find(CarRentalCompany.class, name);
+    }
+
+    /**
+     * @return the index of the car types of the company, built once until
+     * the company changes
+     */
+    public CarTypeIndex getCarTypeIndex(CarRentalCompany crc) {
+        CarTypeIndex index = carTypeIndexes.get(crc.getName());
+        if (index != null) {
+            hits.incrementAndGet();
+            return index;
+        }
+        long before;
+        synchronized (this) {
+            before = generation;
+        }
+        misses.incrementAndGet();
+        index = new CarTypeIndex(crc.getAllTypes());
+        synchronized (this) {
+            // the company may have changed since it was read
+            if (ENABLED && before == generation) {
+                carTypeIndexes.put(crc.getName(), index);
+            }
+        }
+        return index;
+    }
+
+    /****************
+     * INVALIDATION *
+     ****************/
+
+    public void invalidate(String company) {
+        em.getEntityManagerFactory().getCache().evict(CarRentalCompany.class, company);
+        synchronized (this) {
+            companyNames = null;
+            carTypeIndexes.remove(company);
+            generation++;
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Invalidate the company once the current transaction completes, or right
+     * away outside of a transaction. A rolled back change may have been read
+     * by its own transaction, so that invalidates too.
+     */
+    public void invalidateOnCompletion(final String company) {
+        if (transactions.getTransactionKey() == null) {
+            invalidate(company);
+            return;
+        }
+        transactions.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                invalidate(company);
+            }
+        });
+    }
+
+    /**************
+     * STATISTICS *
+     **************/
+
+    /**
+     * Company lookups, name lists and car type indexes together. The size is
+     * the number of companies of the cached name list that are in the
+     * shared cache.
+     */
+    public CacheStatistics getStatistics() {
+        List<String> names;
+        synchronized (this) {
+            names = companyNames == null ? Collections.<String>emptyList() : companyNames;
+        }
+        Cache cache = em.getEntityManagerFactory().getCache();
+        int cached = 0;
+        for (String name : names) {
+            if (cache.contains(CarRentalCompany.class, name)) {
+                cached++;
+            }
+        }
+        return new CacheStatistics(hits.get(), misses.get(), 0, invalidations.get(), cached, names.size());
+    }
+}
@@ -0,0 +1,216 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import rental.EpochDays;
+
+/**
+ * Short-lived holds on the capacity of a car type, placed when quoting.
+ *
+ * A hold takes one car of the type for the days of its period, without
+ * saying which one. A period of a type can be held or booked by others only
+ * while more cars are free in it than there are holds of others on its
+ * busiest day. As the held cars need not be free for the whole period, this
+ * errs on the side of rejecting.
+ *
+ * Holds expire after {@link #HOLD_TIME}, unless their owner releases them
+ * earlier. Expired holds are ignored and swept out regularly.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class InventoryHolds {
+
+    static final long HOLD_TIME = Long.getLong("rental.hold.seconds", 120) * 1000;
+
+    private final AtomicLong owners = new AtomicLong();
+    // holds per company and car type
+    private final Map<String, Map<String, List<Hold>>> holds = new HashMap<String, Map<String, List<Hold>>>();
+    // scratch space of maxHeld, only used under the lock
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+
+    /**
+     * @return a new owner id, to hold and release with
+     */
+    public long newOwner() {
+        return owners.incrementAndGet();
+    }
+
+    /**
+     * Hold a car of the type for the period, if the free cars are not all
+     * held already.
+     *
+     * @param freeCars the number of cars of the type that are free during the
+     * whole period
+     * @return whether the hold was placed
+     */
+    public synchronized boolean hold(long owner, String company, String carType, Date start, Date end, int freeCars) {
+        int startDay = EpochDays.fromDate(start);
+        int endDay = EpochDays.fromDate(end);
+        List<Hold> ofType = holdsOf(company, carType, true);
+        long now = System.currentTimeMillis();
+        if (maxHeld(ofType, 0, startDay, endDay, now) >= freeCars) {
+            return false;
+        }
+        ofType.add(new Hold(owner, startDay, endDay, now + HOLD_TIME));
+        return true;
+    }
+
+    /**
+     * @return the most cars of the type held by others than the owner on a
+     * single day of the period
+     */
+    public synchronized int getHeld(long owner, String company, String carType, Date start, Date end) {
+        List<Hold> ofType = holdsOf(company, carType, false);
+        if (ofType == null) {
+            return 0;
+        }
+        return maxHeld(ofType, owner, EpochDays.fromDate(start), EpochDays.fromDate(end), System.currentTimeMillis());
+    }
+
+    /**
+     * @return per car type of the company with holds of others during the
+     * period, the most cars of the type they hold on a single day
+     */
+    public synchronized Map<String, Integer> getHeldCarTypes(long owner, String company, Date start, Date end) {
+        Map<String, List<Hold>> ofCompany = holds.get(company);
+        if (ofCompany == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> out = new HashMap<String, Integer>();
+        int startDay = EpochDays.fromDate(start);
+        int endDay = EpochDays.fromDate(end);
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, List<Hold>> ofType : ofCompany.entrySet()) {
+            int held = maxHeld(ofType.getValue(), owner, startDay, endDay, now);
+            if (held > 0) {
+                out.put(ofType.getKey(), held);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Release all holds of the owner.
+     */
+    public synchronized void release(long owner) {
+        for (Map<String, List<Hold>> ofCompany : holds.values()) {
+            for (List<Hold> ofType : ofCompany.values()) {
+                Iterator<Hold> it = ofType.iterator();
+                while (it.hasNext()) {
+                    if (it.next().owner == owner) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    @Schedule(second = "*/10", minute = "*", hour = "*", persistent = false)
+    public synchronized void sweep() {
+        long now = System.currentTimeMillis();
+        Iterator<Map<String, List<Hold>>> companies = holds.values().iterator();
+        while (companies.hasNext()) {
+            Map<String, List<Hold>> ofCompany = companies.next();
+            Iterator<List<Hold>> types = ofCompany.values().iterator();
+            while (types.hasNext()) {
+                List<Hold> ofType = types.next();
+                Iterator<Hold> it = ofType.iterator();
+                while (it.hasNext()) {
+                    if (it.next().expires <= now) {
+                        it.remove();
+                    }
+                }
+                if (ofType.isEmpty()) {
+                    types.remove();
+                }
+            }
+            if (ofCompany.isEmpty()) {
+                companies.remove();
+            }
+        }
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private List<Hold> holdsOf(String company, String carType, boolean create) {
+        Map<String, List<Hold>> ofCompany = holds.get(company);
+        if (ofCompany == null) {
+            if (!create) {
+                return null;
+            }
+            ofCompany = new HashMap<String, List<Hold>>();
+            holds.put(company, ofCompany);
+        }
+        List<Hold> ofType = ofCompany.get(carType);
+        if (ofType == null && create) {
+            ofType = new ArrayList<Hold>();
+            ofCompany.put(carType, ofType);
+        }
+        return ofType;
+    }
+
+    // the most live holds, not of the excluded owner, that share a day of the period
+    private int maxHeld(List<Hold> ofType, long excluded, int startDay, int endDay, long now) {
+        if (starts.length < ofType.size()) {
+            starts = new int[Math.max(ofType.size(), 2 * starts.length)];
+            ends = new int[starts.length];
+        }
+        int n = 0;
+        for (Hold hold : ofType) {
+            if (hold.owner != excluded && hold.expires > now
+                    && hold.startDay <= endDay && hold.endDay >= startDay) {
+                starts[n] = Math.max(hold.startDay, startDay);
+                ends[n] = Math.min(hold.endDay, endDay);
+                n++;
+            }
+        }
+        if (n <= 1) {
+            return n;
+        }
+        Arrays.sort(starts, 0, n);
+        Arrays.sort(ends, 0, n);
+        // sweep the days, a hold still counts on its end day
+        int held = 0;
+        int max = 0;
+        for (int s = 0, e = 0; s < n; ) {
+            if (starts[s] <= ends[e]) {
+                held++;
+                s++;
+                max = Math.max(max, held);
+            } else {
+                held--;
+                e++;
+            }
+        }
+        return max;
+    }
+
+    private static final class Hold {
+
+        private final long owner;
+        private final int startDay;
+        private final int endDay;
+        private final long expires;
+
+        Hold(long owner, int startDay, int endDay, long expires) {
+            this.owner = owner;
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package session;
+
+import java.io.File;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import rental.BookingJournal;
+
+/**
+ * Opens the BookingJournal when the application starts and closes it when the
+ * application stops, so a redeploy leaves no thread or mapping behind.
+ *
+ * The journal is written to rental.journal.dir, by default rental-journal in
+ * the temporary directory.
+ */
+@Singleton
+@Startup
+public class JournalKeeper {
+
+    @PostConstruct
+    void open() {
+        BookingJournal.open(new File(System.getProperty("rental.journal.dir",
+                new File(System.getProperty("java.io.tmpdir"), "rental-journal").getPath())));
+    }
+
+    @PreDestroy
+    void close() {
+        BookingJournal.close();
+    }
+}
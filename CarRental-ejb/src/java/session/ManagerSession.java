@@ -6,29 +6,38 @@ import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.interceptor.Interceptors;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import rental.Car;
 import rental.CarRentalCompany;
 import rental.CarType;
+import rental.FleetRow;
 import rental.Reservation;
 import rental.ReservationException;
 
 @Stateless
+@Interceptors(MetricsInterceptor.class)
 public class ManagerSession implements ManagerSessionRemote {
 
+    // keep in line with eclipselink.jdbc.batch-writing.size
+    private static final int FLEET_BATCH_SIZE = 1000;
+    // reservations per page of a listing
+    static final int PAGE_SIZE = 500;
+
     @Override
     public Set<CarType> getCarTypes(String company) {
-        return new HashSet<CarType>(em.createQuery("SELECT crc.carType FROM CarRentalCompany crc "
-                + "WHERE crc.name LIKE :company").setParameter("company", company).getResultList());
+        return new HashSet<CarType>(em.createQuery("SELECT t FROM CarRentalCompany crc, IN (crc.carTypes) t "
+                + "WHERE crc.name = :company", CarType.class).setParameter("company", company).getResultList());
 
     }
 
     @Override
     public Set<Integer> getCarIds(String company, String type) {
         Set<Integer> out = new HashSet<Integer>();
-        for (Car c : em.find(CarRentalCompany.class, company).getCars(type)) {
+        for (Car c : catalogCache.findCompany(em, company).getCars(type)) {
             out.add(c.getId());
         }
 
@@ -37,36 +46,92 @@ public class ManagerSession implements ManagerSessionRemote {
 
     @Override
     public int getNumberOfReservations(String company, String type, int id) {
-        return em.find(CarRentalCompany.class, company).getCar(id).getReservations().size();
+        List<Integer> count = em.createNamedQuery("Car.reservationCount", Integer.class)
+                .setParameter("company", company)
+                .setParameter("id", id)
+                .getResultList();
+        if (count.isEmpty()) {
+            throw new IllegalArgumentException("<" + company + "> No car with uid " + id);
+        }
+        return count.get(0);
     }
 
     @Override
     public int getNumberOfReservations(String company, String type) {
-        Set<Reservation> out = new HashSet<Reservation>();
-            for (Car c : em.find(CarRentalCompany.class, company).getCars(type)) {
-                out.addAll(c.getReservations());
-            }
-
-        return out.size();
+        return reservationCounters.getNumberOfReservations(company, type);
     }
 
     @Override
     public int getNumberOfReservationsBy(String renter) {
-        Set<Reservation> out = new HashSet<Reservation>();
-        for (String crcStr : getAllCarRentalCompanies()) {
-            CarRentalCompany crc=em.find(CarRentalCompany.class, crcStr);
-            out.addAll(crc.getReservationsBy(renter));
+        return ((Number) em.createNamedQuery("Reservation.countByRenter")
+                .setParameter("renter", renter)
+                .getSingleResult()).intValue()
+                + reservationArchiver.getNumberOfArchivedReservationsBy(renter);
+    }
+
+    @Override
+    public List<Reservation> getReservationsBy(String renter) {
+        return new ArrayList<Reservation>(em.createNamedQuery("Reservation.findByRenter", Reservation.class)
+                .setParameter("renter", renter)
+                .getResultList());
+    }
+
+    /**
+     * Keyset paging: a page holds the reservations after the last id of the
+     * previous page, so every page is a bounded range scan of the renter
+     * index, however deep the listing goes.
+     */
+    @Override
+    public ReservationPage getReservationsBy(String renter, String continuation) {
+        int after = continuation == null ? 0 : lastId(continuation, renter);
+        // one more than a page tells whether another page follows
+        List<Reservation> reservations = new ArrayList<Reservation>(em.createNamedQuery("Reservation.findByRenterAfter", Reservation.class)
+                .setParameter("renter", renter)
+                .setParameter("after", after)
+                .setMaxResults(PAGE_SIZE + 1)
+                .getResultList());
+        if (reservations.size() <= PAGE_SIZE) {
+            return new ReservationPage(reservations, null);
         }
-        return out.size();
+        reservations.remove(PAGE_SIZE);
+        return new ReservationPage(reservations, continuation(reservations.get(PAGE_SIZE - 1).getId(), renter));
+    }
+
+    // the last id of a page, checked against the listing it belongs to
+    private static String continuation(int lastId, String listing) {
+        return Integer.toString(lastId, 36) + "." + Integer.toString(listing.hashCode() & 0x7fffffff, 36);
     }
+
+    private static int lastId(String continuation, String listing) {
+        int dot = continuation.indexOf('.');
+        try {
+            if (dot > 0 && continuation.equals(continuation(Integer.parseInt(continuation.substring(0, dot), 36), listing))) {
+                return Integer.parseInt(continuation.substring(0, dot), 36);
+            }
+        } catch (NumberFormatException e) {
+            // not a continuation of ours
+        }
+        throw new IllegalArgumentException("Illegal continuation " + continuation);
+    }
+
     @PersistenceContext
     EntityManager em;
+    @EJB
+    AvailabilityCache availabilityCache;
+    @EJB
+    ReservationCounters reservationCounters;
+    @EJB
+    CatalogCache catalogCache;
+    @EJB
+    OccupancyStore occupancyStore;
+    @EJB
+    ReservationArchiver reservationArchiver;
 
     @Override
     public void addCarRentalCompany(String name) {
         CarRentalCompany carRentalCompany = new CarRentalCompany(name);
         em.merge(carRentalCompany);
-
+        catalogCache.invalidateOnCompletion(name);
     }
 
     @Override
@@ -74,10 +139,15 @@ public class ManagerSession implements ManagerSessionRemote {
         CarType carType = em.find(CarType.class, carTypeId);
         Car car = new Car(carType);
         CarRentalCompany crc = em.find(CarRentalCompany.class, crcName);
+        if (!crc.getAllTypes().contains(carType)) {
+            reservationCounters.register(crcName, carType.getName());
+        }
         crc.addCar(car);
 //        em.persist(car); not needed here
         em.merge(crc);
-
+        availabilityCache.invalidateOnCommit(crcName);
+        catalogCache.invalidateOnCompletion(crcName);
+        occupancyStore.fleetChangedOnCommit(crcName);
     }
 
     @Override
@@ -87,46 +157,97 @@ public class ManagerSession implements ManagerSessionRemote {
         CarRentalCompany crc= em.find(CarRentalCompany.class, crcName);
         crc.addCarType(carType); 
         em.persist(carType); //Here it is needed
+        reservationCounters.register(crcName, name);
         em.merge(crc);
+        availabilityCache.invalidateOnCommit(crcName);
+        catalogCache.invalidateOnCompletion(crcName);
+        occupancyStore.fleetChangedOnCommit(crcName);
         return carType.getId();
     }
 
+    /**
+     * Add a whole fleet in one transaction, creating the company if needed.
+     * Cars are persisted directly and flushed in batches, so the company
+     * graph is never merged as a whole. After every batch the persistence
+     * context is cleared, so neither it nor the cost of a flush grows with
+     * the fleet. Large fleets can be streamed by calling this repeatedly with
+     * consecutive chunks of rows.
+     *
+     * @return the number of cars added
+     */
+    @Override
+    public int loadFleet(String crcName, List<FleetRow> fleet) {
+        CarRentalCompany crc = em.find(CarRentalCompany.class, crcName);
+        if (crc == null) {
+            crc = new CarRentalCompany(crcName);
+            em.persist(crc);
+        }
+        int nbOfCars = 0;
+        for (FleetRow row : fleet) {
+            CarType carType = crc.findType(row.getName());
+            if (carType == null) {
+                carType = new CarType(row.getName(), row.getNbOfSeats(), row.getTrunkSpace(),
+                        row.getRentalPricePerDay(), row.isSmokingAllowed());
+                em.persist(carType);
+                crc.addCarType(carType);
+                reservationCounters.register(crcName, carType.getName());
+            }
+            for (int i = 0; i < row.getNbOfCars(); i++) {
+                Car car = new Car(carType);
+                em.persist(car);
+                crc.addCar(car);
+                if (++nbOfCars % FLEET_BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                    // only the managed copies take part in the next batch
+                    crc = em.find(CarRentalCompany.class, crcName);
+                    carType = em.find(CarType.class, carType.getId());
+                }
+            }
+        }
+        availabilityCache.invalidateOnCommit(crcName);
+        catalogCache.invalidateOnCompletion(crcName);
+        occupancyStore.fleetChangedOnCommit(crcName);
+        return nbOfCars;
+    }
+
     @Override
     public List<String> getAllCarRentalCompanies() {
-        return new ArrayList<String>(em.createQuery("SELECT crc.name FROM CarRentalCompany crc").getResultList()); 
+        return new ArrayList<String>(catalogCache.getCompanyNames());
     }
 
     
     @Override
     public String getMostPopularCarRentalCompany(){
-
-        String result=(String) em.createQuery("SELECT crc1.name FROM CarRentalCompany crc1 "
-                + "WHERE NOT EXISTS "
-                + "("
-                    + "SELECT crc2 FROM CarRentalCompany crc2 WHERE "
-                    + "(SELECT COUNT(res1) FROM Reservation res1 WHERE crc1.name=res1.rentalCompany) < "
-                    + "(SELECT COUNT(res2) FROM Reservation res2 WHERE crc2.name=res2.rentalCompany)"
-                + ")").getResultList().get(0);   
-    return result;
+        return reservationCounters.getMostPopularCompany();
     }
 
     @Override
     public CarType getMostPopularCarTypeIn(String carRentalCompanyName) {
+        String carType = reservationCounters.getMostPopularCarType(carRentalCompanyName);
+        if (carType == null) {
+            return null;
+        }
+        return em.createQuery("SELECT t FROM CarRentalCompany crc, IN (crc.carTypes) t "
+                + "WHERE crc.name = :company AND t.name = :carType", CarType.class)
+                .setParameter("company", carRentalCompanyName)
+                .setParameter("carType", carType)
+                .getSingleResult();
+    }
 
-        CarType result = (CarType) em.createQuery("SELECT carType1 FROM CarRentalCompany crc, IN (crc.carTypes) carType1 "
-                + "WHERE crc.name LIKE :company"
-                + " AND NOT EXISTS"
-                + "("
-                    + "SELECT carType2 FROM CarRentalCompany crc, IN (crc.carTypes) carType2 "
-                        + "WHERE crc.name LIKE :company AND "
-                            + "(SELECT COUNT(res1) FROM Reservation res1 WHERE res1.carType=carType1.name AND res1.rentalCompany LIKE :company )"
-                            + " < "
-                            + "(SELECT COUNT(res2) FROM Reservation res2 WHERE res2.carType=carType2.name AND res2.rentalCompany LIKE :company )"
-                + ")"
-        ).setParameter("company", carRentalCompanyName).getResultList().get(0);
+    @Override
+    public CacheStatistics getAvailabilityCacheStatistics() {
+        return availabilityCache.getStatistics();
+    }
 
-        return result;
+    @Override
+    public CacheStatistics getCatalogCacheStatistics() {
+        return catalogCache.getStatistics();
+    }
 
+    @Override
+    public List<OperationStatistics> getOperationStatistics() {
+        return OperationMetrics.getAllStatistics();
     }
 
 }
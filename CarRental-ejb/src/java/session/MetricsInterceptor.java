@@ -0,0 +1,24 @@
+package session;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+
+/**
+ * Records every business method call in the OperationMetrics of its method.
+ */
+public class MetricsInterceptor {
+
+    @AroundInvoke
+    public Object record(InvocationContext context) throws Exception {
+        OperationMetrics metrics = OperationMetrics.of(context.getMethod());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = context.proceed();
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(System.nanoTime() - start, failed);
+        }
+    }
+}
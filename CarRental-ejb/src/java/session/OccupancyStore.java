@@ -0,0 +1,327 @@
+package session;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import rental.FleetOccupancy;
+import rental.OccupancySnapshot;
+import rental.Reservation;
+
+/**
+ * Server-wide occupancy of all fleets, so availability can be answered from
+ * memory, see AvailabilityQueries.
+ *
+ * Building it means reading every reservation, so it is written to an
+ * OccupancySnapshot every few minutes and at shutdown. On startup the
+ * snapshot is mapped and only the reservations above its watermark are
+ * replayed from the database. Reservation ids are handed out before commit,
+ * so bookings in flight while the snapshot was taken can sit just below the
+ * watermark: replay starts {@link #REPLAY_MARGIN} ids lower, replaying a
+ * reservation twice is harmless. A snapshot of another database, e.g. one
+ * that was dropped and created again, is recognized by its cars and ignored.
+ *
+ * Bookings are added once they commit. Cars added to a company are picked up
+ * the next time its occupancy is asked for.
+ *
+ * Other servers book and add cars into the same database, so every
+ * {@link #TAIL_SECONDS} seconds the reservations and cars above the highest
+ * ids read so far, again less a margin of {@link #TAIL_MARGIN}, are read. Only
+ * what is read from the database moves the watermark: ids are handed out in
+ * blocks per server, so a local booking can be far above those of others
+ * that commit later. A booking or car of another server is thus seen within
+ * a tail, unless it commits after more than TAIL_MARGIN higher ids were
+ * read; then it waits for the next start. Until then free cars can be reported
+ * that are not; booking never relies on this, ReservationBooker asks the
+ * database which cars are free.
+ *
+ * The snapshot is rental.snapshot.dir/occupancy.snapshot, by default in
+ * rental-snapshot in the temporary directory.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class OccupancyStore {
+
+    private static final Logger logger = Logger.getLogger(OccupancyStore.class.getName());
+    static final int REPLAY_MARGIN = 10000;
+    static final int TAIL_SECONDS = 5;
+    static final int TAIL_MARGIN = 1000;
+    // reservations read per query while replaying
+    static final int REPLAY_PAGE = 10000;
+    private static final String CARS = "SELECT crc.name, t.name, car.id FROM CarRentalCompany crc JOIN crc.cars car JOIN car.type t";
+
+    @Resource
+    TransactionSynchronizationRegistry transactions;
+    @PersistenceContext
+    EntityManager em;
+
+    private final ConcurrentMap<String, FleetOccupancy> fleets = new ConcurrentHashMap<String, FleetOccupancy>();
+    // companies whose fleet changed since their cars were last read
+    private final Set<String> changedFleets = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile int watermark;
+    // the highest car id read from the database; a lost update only rereads cars
+    private volatile int carWatermark;
+
+    /***********
+     * STARTUP *
+     ***********/
+
+    @PostConstruct
+    void warmUp() {
+        long started = System.currentTimeMillis();
+        int replayFrom = 0;
+        File file = snapshotFile();
+        if (file.isFile()) {
+            try {
+                OccupancySnapshot snapshot = OccupancySnapshot.read(file);
+                fleets.putAll(snapshot.getFleets());
+                watermark = snapshot.getWatermark();
+                replayFrom = Math.max(0, watermark - REPLAY_MARGIN);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Ignoring occupancy snapshot", e);
+            }
+        }
+        if (!readCars(null) || maxReservationId() < watermark) {
+            logger.log(Level.INFO, "Occupancy snapshot {0} does not match the database, rebuilding", file);
+            fleets.clear();
+            watermark = 0;
+            replayFrom = 0;
+            readCars(null);
+        }
+        int replayed = replay(replayFrom);
+        logger.log(Level.INFO, "Occupancy of {0} companies ready in {1} ms, {2} reservations replayed",
+                new Object[]{fleets.size(), System.currentTimeMillis() - started, replayed});
+    }
+
+    /**
+     * Add the cars of the company, or of all companies for null.
+     *
+     * @return false if a known car is of another company or type than the
+     * database says
+     */
+    private boolean readCars(String company) {
+        Map<Integer, String[]> known = new HashMap<Integer, String[]>();
+        for (FleetOccupancy fleet : fleets.values()) {
+            if (company == null || company.equals(fleet.getCompany())) {
+                for (Map.Entry<Integer, String> car : fleet.getCarTypes().entrySet()) {
+                    known.put(car.getKey(), new String[]{fleet.getCompany(), car.getValue()});
+                }
+            }
+        }
+        List<Object[]> cars = company == null
+                ? em.createQuery(CARS, Object[].class).getResultList()
+                : em.createQuery(CARS + " WHERE crc.name = :company", Object[].class)
+                        .setParameter("company", company)
+                        .getResultList();
+        boolean matches = true;
+        for (Object[] car : cars) {
+            String[] was = known.remove((Integer) car[2]);
+            if (was != null && !(was[0].equals(car[0]) && was[1].equals(car[1]))) {
+                matches = false;
+            }
+            addCar(car);
+        }
+        return matches && known.isEmpty();
+    }
+
+    // cars are never removed, ids are handed out like those of reservations
+    private void readNewCars() {
+        for (Object[] car : em.createQuery(CARS + " WHERE car.id > :after", Object[].class)
+                .setParameter("after", Math.max(0, carWatermark - TAIL_MARGIN))
+                .getResultList()) {
+            addCar(car);
+        }
+    }
+
+    private void addCar(Object[] car) {
+        fleet((String) car[0]).addCar((String) car[1], (Integer) car[2]);
+        carWatermark = Math.max(carWatermark, (Integer) car[2]);
+    }
+
+    // archived reservations keep their ids, so archiving never lowers this
+    private int maxReservationId() {
+        Number max = em.createQuery("SELECT MAX(r.id) FROM Reservation r", Number.class).getSingleResult();
+        Number archived = em.createQuery("SELECT MAX(r.id) FROM ArchivedReservation r", Number.class).getSingleResult();
+        return Math.max(max == null ? 0 : max.intValue(), archived == null ? 0 : archived.intValue());
+    }
+
+    // keyset paging keeps the memory of a replay bounded, see ManagerSession
+    private int replay(int after) {
+        int replayed = 0;
+        while (true) {
+            List<Object[]> page = em.createQuery("SELECT r.id, r.rentalCompany, r.carType, r.carId, r.startDay, r.endDay "
+                    + "FROM Reservation r WHERE r.id > :after ORDER BY r.id", Object[].class)
+                    .setParameter("after", after)
+                    .setMaxResults(REPLAY_PAGE)
+                    .getResultList();
+            for (Object[] r : page) {
+                fleet((String) r[1]).reserve((String) r[2], (Integer) r[3], (Integer) r[4], (Integer) r[5]);
+                after = (Integer) r[0];
+            }
+            replayed += page.size();
+            if (page.size() < REPLAY_PAGE) {
+                break;
+            }
+        }
+        watermark = Math.max(watermark, after);
+        return replayed;
+    }
+
+    /********
+     * TAIL *
+     ********/
+
+    // what other servers booked or added, see the class comment
+    @Schedule(second = "*/" + TAIL_SECONDS, minute = "*", hour = "*", persistent = false)
+    synchronized void tail() {
+        readNewCars();
+        replay(Math.max(0, watermark - TAIL_MARGIN));
+    }
+
+    /*************
+     * OCCUPANCY *
+     *************/
+
+    /**
+     * @return the occupancy of the company, with its latest cars
+     */
+    public FleetOccupancy getOccupancy(String company) {
+        if (changedFleets.remove(company)) {
+            readCars(company);
+        }
+        return fleet(company);
+    }
+
+    /**
+     * Add the reservations once the current transaction commits, or right
+     * away outside of a transaction.
+     */
+    public void reserveOnCommit(Collection<Reservation> reservations) {
+        final List<Reservation> committing = new ArrayList<Reservation>(reservations);
+        onCommit(new Runnable() {
+            @Override
+            public void run() {
+                reserve(committing);
+            }
+        });
+    }
+
+    /**
+     * Read the cars of the company again the next time it is asked for, once
+     * the current transaction commits.
+     */
+    public void fleetChangedOnCommit(final String company) {
+        onCommit(new Runnable() {
+            @Override
+            public void run() {
+                changedFleets.add(company);
+            }
+        });
+    }
+
+    /**
+     * Forget the days before the given one in all fleets, see
+     * ReservationArchiver.
+     */
+    public void dropBefore(int day) {
+        for (FleetOccupancy fleet : fleets.values()) {
+            fleet.dropBefore(day);
+        }
+    }
+
+    // the watermark is left to the tail, see the class comment
+    private void reserve(Collection<Reservation> reservations) {
+        for (Reservation r : reservations) {
+            fleet(r.getRentalCompany()).reserve(r.getCarType(), r.getCarId(), r.getStartDay(), r.getEndDay());
+        }
+    }
+
+    /************
+     * SNAPSHOT *
+     ************/
+
+    @Schedule(minute = "*/5", hour = "*", persistent = false)
+    void writeSnapshot() {
+        // taken before the fleets are read, bookings in flight are left to the replay margin
+        int writtenWatermark = watermark;
+        File file = snapshotFile();
+        try {
+            File dir = file.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            OccupancySnapshot.write(file, writtenWatermark, new ArrayList<FleetOccupancy>(fleets.values()));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot write occupancy snapshot", e);
+        }
+    }
+
+    @PreDestroy
+    void shutDown() {
+        writeSnapshot();
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private void onCommit(final Runnable action) {
+        if (transactions.getTransactionKey() == null) {
+            action.run();
+            return;
+        }
+        transactions.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private FleetOccupancy fleet(String company) {
+        FleetOccupancy fleet = fleets.get(company);
+        if (fleet == null) {
+            FleetOccupancy created = new FleetOccupancy(company);
+            fleet = fleets.putIfAbsent(company, created);
+            if (fleet == null) {
+                fleet = created;
+            }
+        }
+        return fleet;
+    }
+
+    private static File snapshotFile() {
+        File dir = new File(System.getProperty("rental.snapshot.dir",
+                new File(System.getProperty("java.io.tmpdir"), "rental-snapshot").getPath()));
+        return new File(dir, "occupancy.snapshot");
+    }
+}
@@ -0,0 +1,186 @@
+package session;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Call count, error count and latency histogram of one business method.
+ *
+ * Recording takes no lock and allocates nothing. The counters are striped
+ * over the calling threads, each stripe on cache lines of its own, so
+ * concurrent calls rarely write to the same line. Reading sums the stripes.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    private static final Logger logger = Logger.getLogger(OperationMetrics.class.getName());
+    private static final ConcurrentMap<Method, OperationMetrics> operations = new ConcurrentHashMap<Method, OperationMetrics>();
+
+    static final int BUCKETS = 32;
+    private static final int STRIPES = 16;
+    private static final int CALLS = 0;
+    private static final int ERRORS = 1;
+    private static final int NANOS = 2;
+    private static final int FIRST_BUCKET = 3;
+    // counters of a stripe plus padding, a multiple of a 64 byte line
+    private static final int STRIDE = 48;
+
+    private final String operation;
+    private final AtomicLongArray counters = new AtomicLongArray(STRIPES * STRIDE);
+
+    private OperationMetrics(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * The metrics of the method, registered with JMX the first time.
+     */
+    static OperationMetrics of(Method method) {
+        OperationMetrics metrics = operations.get(method);
+        if (metrics == null) {
+            OperationMetrics created = new OperationMetrics(name(method));
+            metrics = operations.putIfAbsent(method, created);
+            if (metrics == null) {
+                metrics = created;
+                metrics.register(method);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of all methods called so far, by operation name
+     */
+    static List<OperationStatistics> getAllStatistics() {
+        List<OperationStatistics> out = new ArrayList<OperationStatistics>();
+        for (OperationMetrics metrics : operations.values()) {
+            out.add(metrics.getStatistics());
+        }
+        Collections.sort(out, new Comparator<OperationStatistics>() {
+            @Override
+            public int compare(OperationStatistics a, OperationStatistics b) {
+                return a.getOperation().compareTo(b.getOperation());
+            }
+        });
+        return out;
+    }
+
+    /*************
+     * RECORDING *
+     *************/
+
+    void record(long nanos, boolean failed) {
+        int base = (int) (Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+        counters.incrementAndGet(base + CALLS);
+        if (failed) {
+            counters.incrementAndGet(base + ERRORS);
+        }
+        counters.addAndGet(base + NANOS, nanos);
+        counters.incrementAndGet(base + FIRST_BUCKET + bucket(nanos));
+    }
+
+    // the number of bits of the duration in microseconds
+    private static int bucket(long nanos) {
+        int bits = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+        return bits < BUCKETS ? bits : BUCKETS - 1;
+    }
+
+    /***********
+     * READING *
+     ***********/
+
+    OperationStatistics getStatistics() {
+        long calls = 0;
+        long errors = 0;
+        long nanos = 0;
+        long[] histogram = new long[BUCKETS];
+        for (int base = 0; base < STRIPES * STRIDE; base += STRIDE) {
+            calls += counters.get(base + CALLS);
+            errors += counters.get(base + ERRORS);
+            nanos += counters.get(base + NANOS);
+            for (int b = 0; b < BUCKETS; b++) {
+                histogram[b] += counters.get(base + FIRST_BUCKET + b);
+            }
+        }
+        return new OperationStatistics(operation, calls, errors, nanos, histogram);
+    }
+
+    @Override
+    public long getCalls() {
+        return getStatistics().getCalls();
+    }
+
+    @Override
+    public long getErrors() {
+        return getStatistics().getErrors();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return getStatistics().getMeanMillis();
+    }
+
+    @Override
+    public double getMedianMillis() {
+        return getStatistics().getPercentileMillis(0.5);
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return getStatistics().getPercentileMillis(0.99);
+    }
+
+    @Override
+    public double get999thPercentileMillis() {
+        return getStatistics().getPercentileMillis(0.999);
+    }
+
+    @Override
+    public long[] getHistogram() {
+        return getStatistics().getHistogram();
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private static String name(Method method) {
+        StringBuilder name = new StringBuilder(method.getDeclaringClass().getSimpleName())
+                .append('.').append(method.getName()).append('(');
+        Class<?>[] parameters = method.getParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                name.append(',');
+            }
+            name.append(parameters[i].getSimpleName());
+        }
+        return name.append(')').toString();
+    }
+
+    private void register(Method method) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("rental:type=Operation,bean="
+                    + method.getDeclaringClass().getSimpleName()
+                    + ",method=" + ObjectName.quote(operation.substring(operation.indexOf('.') + 1)));
+            // left behind by an earlier deployment
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Could not register the metrics of " + operation, e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package session;
+
+/**
+ * Metrics of one business method, registered as
+ * rental:type=Operation,bean=...,method=...
+ */
+public interface OperationMetricsMXBean {
+
+    public long getCalls();
+
+    public long getErrors();
+
+    public double getMeanMillis();
+
+    public double getMedianMillis();
+
+    public double get99thPercentileMillis();
+
+    public double get999thPercentileMillis();
+
+    public long[] getHistogram();
+}
@@ -0,0 +1,118 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Schedule;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.interceptor.Interceptors;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import rental.BookingJournal;
+import rental.CarRentalCompany;
+import rental.ConfirmedQuote;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+/**
+ * The stateless alternative to CarRentalSession, see QuoteServiceRemote.
+ * Quotes live in their tokens, see QuoteTokens.
+ */
+@Stateless
+@Interceptors(MetricsInterceptor.class)
+public class QuoteService implements QuoteServiceRemote {
+
+    private static final Logger logger = Logger.getLogger(QuoteService.class.getName());
+    // no owner has this id, so all holds belong to others
+    private static final long NO_HOLDS = 0;
+    @PersistenceContext
+    EntityManager em;
+    @EJB
+    AvailabilityQueries availabilityQueries;
+    @EJB
+    ReservationBooker reservationBooker;
+    @EJB
+    InventoryHolds inventoryHolds;
+    @EJB
+    CatalogCache catalogCache;
+
+    @Override
+    public String createQuote(String renter, String company, ReservationConstraints constraints) throws ReservationException {
+        AvailabilityQueries.checkQuotable(constraints.getStartDate(), constraints.getEndDate());
+        CarRentalCompany crc = catalogCache.findCompany(em, company);
+        if (crc == null) {
+            throw new ReservationException("No car rental company named " + company);
+        }
+        Quote quote = crc.priceQuote(constraints, renter);
+        if (!isAvailable(company, constraints.getCarType(), constraints.getStartDate(), constraints.getEndDate())) {
+            throw new ReservationException("<" + company
+                    + "> No cars available to satisfy the given constraints.");
+        }
+        BookingJournal.quoted(quote);
+        return QuoteTokens.encode(quote);
+    }
+
+    // quotes are not held here, but the holds of sessions are respected
+    private boolean isAvailable(String company, String carType, Date start, Date end) {
+        int held = inventoryHolds.getHeld(NO_HOLDS, company, carType, start, end);
+        if (held == 0) {
+            return availabilityQueries.isAvailable(company, carType, start, end);
+        }
+        return availabilityQueries.countAvailableCars(company, carType, start, end) > held;
+    }
+
+    @Override
+    public Quote getQuote(String token) throws ReservationException {
+        return QuoteTokens.decode(token);
+    }
+
+    // every attempt runs in a transaction of its own, see ReservationBooker
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    @Override
+    public List<Reservation> confirmQuotes(List<String> tokens) throws ReservationException {
+        List<Quote> quotes = new ArrayList<Quote>(tokens.size());
+        List<ConfirmedQuote> confirmed = new ArrayList<ConfirmedQuote>(tokens.size());
+        Set<Long> nonces = new HashSet<Long>();
+        for (String token : tokens) {
+            QuoteTokens.Token decoded = QuoteTokens.read(token);
+            if (!nonces.add(decoded.nonce)) {
+                throw new ReservationException("Quote confirmed twice");
+            }
+            quotes.add(decoded.quote);
+            confirmed.add(new ConfirmedQuote(decoded.nonce, decoded.expires));
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Reservation> reservations = reservationBooker.book(quotes, NO_HOLDS, confirmed);
+                for (Reservation reservation : reservations) {
+                    BookingJournal.confirmed(reservation);
+                }
+                return reservations;
+            } catch (EJBException e) {
+                if (attempt >= ReservationBooker.MAX_ATTEMPTS || !ReservationBooker.isConflict(e)) {
+                    throw e;
+                }
+                logger.log(Level.FINE, "Booking conflict, attempt {0} of {1}",
+                        new Object[]{attempt, ReservationBooker.MAX_ATTEMPTS});
+            }
+        }
+    }
+
+    // confirmed tokens are only remembered until they expire
+    @Schedule(minute = "*/30", hour = "*", persistent = false)
+    void forgetExpiredConfirmations() {
+        em.createNamedQuery("ConfirmedQuote.expiredBefore")
+                .setParameter("now", (int) (System.currentTimeMillis() / 1000))
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,162 @@
+package session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+import rental.Quote;
+import rental.ReservationException;
+
+/**
+ * Quotes as compact, tamper-proof tokens.
+ *
+ * A token holds the quote fields in binary, dates as epoch days, followed
+ * by the first 16 bytes of an HMAC-SHA256 of them, in URL-safe base64. A
+ * token expires after {@link #VALIDITY}, so an old price cannot be booked
+ * forever. It also holds a random nonce, by which a confirmed token is
+ * refused the second time, see ConfirmedQuote.
+ *
+ * All servers that confirm each other's tokens need the same key, set as
+ * base64 in the rental.token.key system property. Without it every server
+ * makes up a key of its own.
+ */
+final class QuoteTokens {
+
+    private static final Logger logger = Logger.getLogger(QuoteTokens.class.getName());
+    private static final byte VERSION = 2;
+    private static final int SIGNATURE_SIZE = 16;
+    static final long VALIDITY = 30 * 60 * 1000;
+    private static final SecretKeySpec KEY = new SecretKeySpec(key(), "HmacSHA256");
+    private static final SecureRandom nonces = new SecureRandom();
+    private static final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(KEY);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private QuoteTokens() {
+    }
+
+    static String encode(Quote quote) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeInt((int) ((System.currentTimeMillis() + VALIDITY) / 1000));
+            out.writeLong(nonces.nextLong());
+            out.writeUTF(quote.getCarRenter());
+            out.writeUTF(quote.getRentalCompany());
+            out.writeUTF(quote.getCarType());
+            out.writeInt(quote.getStartDay());
+            out.writeInt(quote.getEndDay());
+            out.writeDouble(quote.getRentalPrice());
+            out.write(sign(bytes.toByteArray()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return DatatypeConverter.printBase64Binary(bytes.toByteArray())
+                .replace('+', '-').replace('/', '_').replace("=", "");
+    }
+
+    static Quote decode(String token) throws ReservationException {
+        return read(token).quote;
+    }
+
+    static Token read(String token) throws ReservationException {
+        byte[] bytes;
+        try {
+            bytes = DatatypeConverter.parseBase64Binary(pad(token.replace('-', '+').replace('_', '/')));
+        } catch (IllegalArgumentException e) {
+            throw new ReservationException("Invalid quote token");
+        }
+        if (bytes.length <= SIGNATURE_SIZE) {
+            throw new ReservationException("Invalid quote token");
+        }
+        byte[] fields = Arrays.copyOf(bytes, bytes.length - SIGNATURE_SIZE);
+        byte[] signature = Arrays.copyOfRange(bytes, fields.length, bytes.length);
+        if (!MessageDigest.isEqual(signature, sign(fields))) {
+            throw new ReservationException("Invalid quote token");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(fields));
+        try {
+            if (in.readByte() != VERSION) {
+                throw new ReservationException("Invalid quote token");
+            }
+            int expires = in.readInt();
+            if (expires * 1000L < System.currentTimeMillis()) {
+                throw new ReservationException("Quote expired");
+            }
+            long nonce = in.readLong();
+            String renter = in.readUTF();
+            String company = in.readUTF();
+            String carType = in.readUTF();
+            int startDay = in.readInt();
+            int endDay = in.readInt();
+            double price = in.readDouble();
+            return new Token(new Quote(renter, startDay, endDay, company, carType, price), nonce, expires);
+        } catch (IOException e) {
+            throw new ReservationException("Invalid quote token");
+        }
+    }
+
+    /***********
+     * HELPERS *
+     ***********/
+
+    private static byte[] sign(byte[] fields) {
+        return Arrays.copyOf(macs.get().doFinal(fields), SIGNATURE_SIZE);
+    }
+
+    private static String pad(String base64) {
+        StringBuilder padded = new StringBuilder(base64);
+        while (padded.length() % 4 != 0) {
+            padded.append('=');
+        }
+        return padded.toString();
+    }
+
+    private static byte[] key() {
+        String key = System.getProperty("rental.token.key");
+        if (key != null) {
+            return DatatypeConverter.parseBase64Binary(key);
+        }
+        logger.log(Level.WARNING, "No rental.token.key set, quote tokens are only accepted by this server");
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return random;
+    }
+
+    /**
+     * A decoded token.
+     */
+    static final class Token {
+
+        final Quote quote;
+        final long nonce;
+        // in seconds since the epoch
+        final int expires;
+
+        Token(Quote quote, long nonce, int expires) {
+            this.quote = quote;
+            this.nonce = nonce;
+            this.expires = expires;
+        }
+    }
+}
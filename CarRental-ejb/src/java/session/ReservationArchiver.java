@@ -0,0 +1,121 @@
+package session;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import rental.ArchivedRenterTotal;
+import rental.ArchivedReservation;
+import rental.EpochDays;
+import rental.Reservation;
+
+/**
+ * Moves the reservations that ended before the archive horizon from the
+ * Reservation table to ArchivedReservation, every night. What is left is the
+ * hot partition: the current and future rentals, the only ones availability
+ * and the reservation listings look at.
+ *
+ * The totals stay whole: the counters per car type and the count kept on
+ * every car are not lowered, and archived reservations are added up per
+ * renter in ArchivedRenterTotal.
+ *
+ * The horizon is rental.archive.days days before today. Archiving is off
+ * unless that is set; once on, periods that start before the horizon cannot
+ * be asked for or booked any more, see AvailabilityQueries.
+ */
+@Stateless
+public class ReservationArchiver {
+
+    private static final Logger logger = Logger.getLogger(ReservationArchiver.class.getName());
+    static final int ARCHIVE_DAYS = Integer.getInteger("rental.archive.days", 0);
+    // reservations moved per transaction
+    static final int BATCH_SIZE = 500;
+
+    @Resource
+    SessionContext context;
+    @PersistenceContext
+    EntityManager em;
+    @EJB
+    OccupancyStore occupancyStore;
+
+    /**
+     * @return the first day that is not archived, or Integer.MIN_VALUE when
+     * archiving is off
+     */
+    static int horizon() {
+        return ARCHIVE_DAYS <= 0 ? Integer.MIN_VALUE : EpochDays.fromDate(new Date()) - ARCHIVE_DAYS;
+    }
+
+    // every batch commits on its own, so a run never holds many locks
+    @Schedule(hour = "3", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void archiveExpired() {
+        int horizon = horizon();
+        if (horizon == Integer.MIN_VALUE) {
+            return;
+        }
+        ReservationArchiver self = context.getBusinessObject(ReservationArchiver.class);
+        int archived = 0;
+        int batch;
+        do {
+            batch = self.archiveBatch(horizon);
+            archived += batch;
+        } while (batch == BATCH_SIZE);
+        occupancyStore.dropBefore(horizon);
+        logger.log(Level.INFO, "Archived {0} reservations that ended before {1}",
+                new Object[]{archived, EpochDays.toDate(horizon)});
+    }
+
+    /**
+     * Archive at most BATCH_SIZE reservations that ended before the horizon.
+     *
+     * @return the number archived
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public int archiveBatch(int horizon) {
+        List<Reservation> expired = em.createNamedQuery("Reservation.endedBefore", Reservation.class)
+                .setParameter("horizon", horizon)
+                .setMaxResults(BATCH_SIZE)
+                .getResultList();
+        Map<String, Integer> perRenter = new HashMap<String, Integer>();
+        int today = EpochDays.fromDate(new Date());
+        // the reservations of a car are read through Reservation.carId, the cars are left alone
+        for (Reservation reservation : expired) {
+            em.persist(new ArchivedReservation(reservation, today));
+            em.remove(reservation);
+            Integer count = perRenter.get(reservation.getCarRenter());
+            perRenter.put(reservation.getCarRenter(), count == null ? 1 : count + 1);
+        }
+        for (Map.Entry<String, Integer> ofRenter : perRenter.entrySet()) {
+            int updated = em.createNamedQuery("ArchivedRenterTotal.add")
+                    .setParameter("delta", (long) ofRenter.getValue())
+                    .setParameter("renter", ofRenter.getKey())
+                    .executeUpdate();
+            if (updated == 0) {
+                em.persist(new ArchivedRenterTotal(ofRenter.getKey(), ofRenter.getValue()));
+            }
+        }
+        return expired.size();
+    }
+
+    /**
+     * @return the number of archived reservations of the renter
+     */
+    public int getNumberOfArchivedReservationsBy(String renter) {
+        List<Long> total = em.createNamedQuery("ArchivedRenterTotal.ofRenter", Long.class)
+                .setParameter("renter", renter)
+                .getResultList();
+        return total.isEmpty() ? 0 : total.get(0).intValue();
+    }
+}
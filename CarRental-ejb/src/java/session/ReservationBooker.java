@@ -0,0 +1,141 @@
+package session;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import rental.Car;
+import rental.ConfirmedQuote;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationException;
+
+/**
+ * Books a list of quotes in one transaction of its own.
+ *
+ * Every booked car gets its version bumped, so two transactions that picked
+ * the same car conflict when flushing, while bookings of different cars only
+ * wait on each other for the reservation counter rows they share, which are
+ * updated last, in a fixed order. The conflict surfaces as an OptimisticLockException and
+ * the caller can simply try again: the retry sees the winning reservation and
+ * picks another free car. Free cars are found with a query, only the booked
+ * cars themselves are loaded, never their reservations. Cars held by other
+ * sessions are left to them, see InventoryHolds.
+ *
+ * Confirmed quote tokens are recorded in the same transaction; a token that
+ * was confirmed before, on any server, fails on their key and books nothing.
+ */
+@Stateless
+public class ReservationBooker {
+
+    // bookings that conflict this many times in a row are given up
+    static final int MAX_ATTEMPTS = 5;
+
+    @Resource
+    SessionContext context;
+    @PersistenceContext
+    EntityManager em;
+    @EJB
+    AvailabilityCache availabilityCache;
+    @EJB
+    ReservationCounters reservationCounters;
+    @EJB
+    AvailabilityQueries availabilityQueries;
+    @EJB
+    InventoryHolds inventoryHolds;
+    @EJB
+    OccupancyStore occupancyStore;
+    private final Random random = new Random();
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<Reservation> book(List<Quote> quotes, long holdOwner) throws ReservationException {
+        return book(quotes, holdOwner, Collections.<ConfirmedQuote>emptyList());
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<Reservation> book(List<Quote> quotes, long holdOwner, List<ConfirmedQuote> tokens)
+            throws ReservationException {
+        List<Reservation> done = new LinkedList<Reservation>();
+        try {
+            if (!tokens.isEmpty()) {
+                confirm(tokens);
+            }
+            for (Quote quote : quotes) {
+                done.add(reserve(quote, holdOwner));
+            }
+        } catch (ReservationException e) {
+            context.setRollbackOnly();
+            throw e;
+        }
+        // counter rows are locked last and briefly, see ReservationCounters
+        reservationCounters.reserved(done);
+        // detect conflicting bookings here rather than at commit
+        em.flush();
+        for (Reservation r : done) {
+            availabilityCache.invalidateOnCommit(r.getRentalCompany(), r.getStartDate(), r.getEndDate());
+        }
+        occupancyStore.reserveOnCommit(done);
+        return done;
+    }
+
+    private void confirm(List<ConfirmedQuote> tokens) throws ReservationException {
+        for (ConfirmedQuote token : tokens) {
+            if (em.find(ConfirmedQuote.class, token.getNonce()) != null) {
+                throw new ReservationException("Quote already confirmed");
+            }
+            em.persist(token);
+        }
+        // another server confirming the same token at once fails on the key
+        try {
+            em.flush();
+        } catch (PersistenceException e) {
+            throw new ReservationException("Quote already confirmed");
+        }
+    }
+
+    /**
+     * @return whether a failed booking lost a conflict and can be tried again
+     */
+    static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the query flushes first, so it sees the cars booked for earlier quotes
+    private Reservation reserve(Quote quote, long holdOwner) throws ReservationException {
+        if (quote.getStartDay() < ReservationArchiver.horizon()) {
+            throw new ReservationException("Reservation failed, the period starts before the archive horizon: "
+                    + quote.getStartDate());
+        }
+        List<Integer> availableCars = availabilityQueries.getAvailableCarIds(quote.getRentalCompany(),
+                quote.getCarType(), quote.getStartDate(), quote.getEndDate());
+        int heldByOthers = inventoryHolds.getHeld(holdOwner, quote.getRentalCompany(),
+                quote.getCarType(), quote.getStartDate(), quote.getEndDate());
+        if (availableCars.size() <= heldByOthers) {
+            throw new ReservationException("Reservation failed, all cars of type " + quote.getCarType()
+                    + " are unavailable from " + quote.getStartDate() + " to " + quote.getEndDate());
+        }
+        Car car = em.find(Car.class, availableCars.get(random.nextInt(availableCars.size())));
+        Reservation reservation = new Reservation(quote, car.getId());
+        // the reservations of the car are left unloaded
+        em.persist(reservation);
+        car.countReservation();
+        em.lock(car, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        return reservation;
+    }
+}
@@ -0,0 +1,115 @@
+package session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import rental.Reservation;
+import rental.ReservationCounter;
+
+/**
+ * Keeps the reservation counters per company and car type up to date and
+ * answers the manager statistics from them. Updates join the transaction of
+ * the booking, so the counters never drift.
+ */
+@Stateless
+public class ReservationCounters {
+
+    @PersistenceContext
+    EntityManager em;
+
+    /**
+     * Create the counters of a car type of a company, if they do not exist yet.
+     * Called when a car type joins a company, see ManagerSession; bookings
+     * only update counters, so two of them never race to create the same.
+     */
+    public void register(String company, String carType) {
+        long stripes = em.createNamedQuery("ReservationCounter.countStripes", Long.class)
+                .setParameter("company", company)
+                .setParameter("carType", carType)
+                .getSingleResult();
+        if (stripes > 0) {
+            return;
+        }
+        for (int stripe = 0; stripe < ReservationCounter.STRIPES; stripe++) {
+            em.persist(new ReservationCounter(company, carType, stripe));
+        }
+    }
+
+    /**
+     * Count the reservations, one update per counter row. Rows are updated in
+     * the order of company, car type and stripe, so two bookings that share
+     * rows lock them in the same order and never deadlock.
+     */
+    public void reserved(Collection<Reservation> reservations) {
+        List<Reservation> sorted = new ArrayList<Reservation>(reservations);
+        Collections.sort(sorted, BY_COUNTER);
+        int delta = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            delta++;
+            if (i + 1 == sorted.size() || BY_COUNTER.compare(sorted.get(i), sorted.get(i + 1)) != 0) {
+                add(sorted.get(i), delta);
+                delta = 0;
+            }
+        }
+    }
+
+    private void add(Reservation reservation, int delta) {
+        em.createNamedQuery("ReservationCounter.add")
+                .setParameter("delta", delta)
+                .setParameter("company", reservation.getRentalCompany())
+                .setParameter("carType", reservation.getCarType())
+                .setParameter("stripe", ReservationCounter.stripeOf(reservation.getCarId()))
+                .executeUpdate();
+    }
+
+    private static final Comparator<Reservation> BY_COUNTER = new Comparator<Reservation>() {
+        @Override
+        public int compare(Reservation a, Reservation b) {
+            int c = a.getRentalCompany().compareTo(b.getRentalCompany());
+            if (c == 0) {
+                c = a.getCarType().compareTo(b.getCarType());
+            }
+            return c != 0 ? c : ReservationCounter.stripeOf(a.getCarId()) - ReservationCounter.stripeOf(b.getCarId());
+        }
+    };
+
+    /***********
+     * QUERIES *
+     ***********/
+
+    public int getNumberOfReservations(String company, String carType) {
+        Number total = (Number) em.createNamedQuery("ReservationCounter.totalOfCarType")
+                .setParameter("company", company)
+                .setParameter("carType", carType)
+                .getSingleResult();
+        return total == null ? 0 : total.intValue();
+    }
+
+    /**
+     * @return the name of the company with the most reservations, or null if
+     * there are no companies
+     */
+    public String getMostPopularCompany() {
+        List<Object[]> totals = em.createNamedQuery("ReservationCounter.totalsPerCompany", Object[].class)
+                .setMaxResults(1)
+                .getResultList();
+        return totals.isEmpty() ? null : (String) totals.get(0)[0];
+    }
+
+    /**
+     * @return the name of the car type with the most reservations at the
+     * company, or null if the company has no car types
+     */
+    public String getMostPopularCarType(String company) {
+        List<Object[]> totals = em.createNamedQuery("ReservationCounter.totalsPerCarType", Object[].class)
+                .setParameter("company", company)
+                .setMaxResults(1)
+                .getResultList();
+        return totals.isEmpty() ? null : (String) totals.get(0)[0];
+    }
+}
@@ -0,0 +1,121 @@
+package rental;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Prints the events of booking journals, one line per event.
+ *
+ * Usage: BookingJournalReader <journal file>...
+ */
+public class BookingJournalReader {
+
+    private final Map<Integer, String> symbols = new HashMap<Integer, String>();
+    private final List<ByteBuffer> events = new ArrayList<ByteBuffer>();
+    private final DateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    private final DateFormat dayFormat = new SimpleDateFormat("d/M/yyyy");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: BookingJournalReader <journal file>...");
+            System.exit(1);
+        }
+        for (String file : args) {
+            BookingJournalReader reader = new BookingJournalReader();
+            reader.read(new File(file));
+            reader.print();
+        }
+    }
+
+    /**
+     * Read all records, names are resolved when printing as a symbol may come
+     * after its first use.
+     */
+    public void read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] record = new byte[JournalFormat.RECORD_SIZE];
+            while (readRecord(in, record)) {
+                ByteBuffer buffer = ByteBuffer.wrap(record.clone());
+                byte type = buffer.get(JournalFormat.TYPE);
+                if (type == JournalFormat.END) {
+                    break;
+                } else if (type == JournalFormat.SYMBOL) {
+                    readSymbol(in, buffer);
+                } else {
+                    events.add(buffer);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void readSymbol(DataInputStream in, ByteBuffer first) throws IOException {
+        int length = first.getInt(JournalFormat.SYMBOL_LENGTH);
+        byte[] symbol = new byte[JournalFormat.symbolRecords(length) * JournalFormat.RECORD_SIZE];
+        System.arraycopy(first.array(), 0, symbol, 0, JournalFormat.RECORD_SIZE);
+        in.readFully(symbol, JournalFormat.RECORD_SIZE, symbol.length - JournalFormat.RECORD_SIZE);
+        symbols.put(first.getInt(JournalFormat.SYMBOL_ID), new String(symbol, JournalFormat.SYMBOL_NAME, length, "UTF-8"));
+    }
+
+    private static boolean readRecord(DataInputStream in, byte[] record) throws IOException {
+        try {
+            in.readFully(record);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    public void print() {
+        for (ByteBuffer event : events) {
+            System.out.println(format(event));
+        }
+    }
+
+    private String format(ByteBuffer event) {
+        StringBuilder out = new StringBuilder(timeFormat.format(new Date(event.getLong(JournalFormat.TIME))));
+        switch (event.get(JournalFormat.TYPE)) {
+            case JournalFormat.QUOTE:
+                out.append(" QUOTE   ");
+                break;
+            case JournalFormat.CONFIRM:
+                out.append(" CONFIRM ");
+                break;
+            case JournalFormat.CANCEL:
+                out.append(" CANCEL  ");
+                break;
+            default:
+                return out.append(" unknown record type ").append(event.get(JournalFormat.TYPE)).toString();
+        }
+        out.append(symbol(event, JournalFormat.COMPANY))
+                .append(' ').append(symbol(event, JournalFormat.CAR_TYPE))
+                .append(" for ").append(symbol(event, JournalFormat.RENTER))
+                .append(" from ").append(dayFormat.format(EpochDays.toDate(event.getInt(JournalFormat.START_DAY))))
+                .append(" to ").append(dayFormat.format(EpochDays.toDate(event.getInt(JournalFormat.END_DAY))))
+                .append(String.format(" price %.2f", event.getDouble(JournalFormat.PRICE)));
+        if (event.get(JournalFormat.TYPE) != JournalFormat.QUOTE) {
+            out.append(" car ").append(event.getInt(JournalFormat.CAR))
+                    .append(" reservation ").append(event.getInt(JournalFormat.RESERVATION));
+        }
+        return out.toString();
+    }
+
+    private String symbol(ByteBuffer event, int field) {
+        int id = event.getInt(field);
+        String name = symbols.get(id);
+        return name == null ? "#" + id : name;
+    }
+}
@@ -1,12 +1,18 @@
 package rental;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 
+// serialized compactly, see Wire
 @Entity
-public class CarType implements Serializable{
+@Cacheable
+public class CarType implements Externalizable {
     
     private String name;
     private int nbOfSeats;
@@ -59,6 +65,30 @@ public class CarType implements Serializable{
     	return trunkSpace;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeString(out, name);
+        Wire.writeVarInt(out, id);
+        Wire.writeVarInt(out, nbOfSeats);
+        out.writeBoolean(smokingAllowed);
+        out.writeDouble(rentalPricePerDay);
+        out.writeFloat(trunkSpace);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        name = Wire.readString(in);
+        id = Wire.readVarInt(in);
+        nbOfSeats = Wire.readVarInt(in);
+        smokingAllowed = in.readBoolean();
+        rentalPricePerDay = in.readDouble();
+        trunkSpace = in.readFloat();
+    }
+
     /*************
      * TO STRING *
      *************/
@@ -0,0 +1,52 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * The car types a renter is interested in: at least a number of seats and a
+ * trunk space, and smoking allowed or not. A null smokingAllowed accepts both.
+ */
+public class CarTypeFilter implements Serializable {
+
+    private int minSeats;
+    private float minTrunkSpace;
+    private Boolean smokingAllowed;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public CarTypeFilter(int minSeats, float minTrunkSpace, Boolean smokingAllowed) {
+        this.minSeats = minSeats;
+        this.minTrunkSpace = minTrunkSpace;
+        this.smokingAllowed = smokingAllowed;
+    }
+
+    public int getMinSeats() {
+        return minSeats;
+    }
+
+    public float getMinTrunkSpace() {
+        return minTrunkSpace;
+    }
+
+    public Boolean getSmokingAllowed() {
+        return smokingAllowed;
+    }
+
+    public boolean accepts(CarType type) {
+        return type.getNbOfSeats() >= minSeats
+                && type.getTrunkSpace() >= minTrunkSpace
+                && (smokingAllowed == null || type.isSmokingAllowed() == smokingAllowed);
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return String.format("Car type filter [seats: %d+, trunk: %.0fl+, smoking: %s]",
+                getMinSeats(), getMinTrunkSpace(), getSmokingAllowed() == null ? "any" : getSmokingAllowed());
+    }
+}
@@ -0,0 +1,45 @@
+package rental;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Conversion between dates and epoch days, the number of calendar days since
+ * 1 January 1970. Reservation dates are plain calendar dates (midnight in the
+ * default time zone), so a day number identifies them exactly.
+ */
+public final class EpochDays {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    // TimeZone.getDefault() hands out a fresh copy on every call
+    private static final TimeZone ZONE = TimeZone.getDefault();
+
+    private EpochDays() {
+    }
+
+    public static int fromDate(Date date) {
+        long time = date.getTime();
+        long local = time + ZONE.getOffset(time);
+        long day = local / MILLIS_PER_DAY;
+        if (local % MILLIS_PER_DAY < 0) {
+            day--;
+        }
+        return (int) day;
+    }
+
+    public static Date toDate(int epochDay) {
+        long local = epochDay * MILLIS_PER_DAY;
+        // the offset at midnight, which may differ from the one a day off
+        Date date = new Date(local - ZONE.getOffset(local - ZONE.getOffset(local)));
+        if (fromDate(date) == epochDay) {
+            return date;
+        }
+        // midnight skipped by a daylight saving change
+        Calendar calendar = Calendar.getInstance(ZONE);
+        calendar.clear();
+        calendar.set(1970, Calendar.JANUARY, 1);
+        calendar.add(Calendar.DATE, epochDay);
+        return calendar.getTime();
+    }
+}
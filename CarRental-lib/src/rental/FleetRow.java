@@ -0,0 +1,63 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * One line of a fleet definition: a car type and how many cars of that type
+ * the company owns. Mirrors the columns of the company data files.
+ */
+public class FleetRow implements Serializable {
+
+    private String name;
+    private int nbOfSeats;
+    private float trunkSpace;
+    private double rentalPricePerDay;
+    private boolean smokingAllowed;
+    private int nbOfCars;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public FleetRow(String name, int nbOfSeats, float trunkSpace, double rentalPricePerDay, boolean smokingAllowed, int nbOfCars) {
+        this.name = name;
+        this.nbOfSeats = nbOfSeats;
+        this.trunkSpace = trunkSpace;
+        this.rentalPricePerDay = rentalPricePerDay;
+        this.smokingAllowed = smokingAllowed;
+        this.nbOfCars = nbOfCars;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNbOfSeats() {
+        return nbOfSeats;
+    }
+
+    public float getTrunkSpace() {
+        return trunkSpace;
+    }
+
+    public double getRentalPricePerDay() {
+        return rentalPricePerDay;
+    }
+
+    public boolean isSmokingAllowed() {
+        return smokingAllowed;
+    }
+
+    public int getNbOfCars() {
+        return nbOfCars;
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return String.format("Fleet row: %d cars of type %s", getNbOfCars(), getName());
+    }
+}
@@ -0,0 +1,51 @@
+package rental;
+
+/**
+ * Layout of the booking journal, a file of fixed size records.
+ *
+ * Every record takes {@link #RECORD_SIZE} bytes, big endian. Event records
+ * refer to names by symbol id. A symbol record defines an id: it holds the
+ * id and the length of the UTF-8 name at {@link #SYMBOL_ID} and
+ * {@link #SYMBOL_LENGTH}, the name follows and continues over as many
+ * records as it needs. A symbol may be written after the first event that
+ * uses it. A record starting with {@link #END} marks the end of the
+ * journal.
+ */
+public final class JournalFormat {
+
+    public static final int RECORD_SIZE = 64;
+
+    // record types
+    public static final byte END = 0;
+    public static final byte SYMBOL = 1;
+    public static final byte QUOTE = 2;
+    public static final byte CONFIRM = 3;
+    public static final byte CANCEL = 4;
+
+    // event record fields
+    public static final int TYPE = 0;
+    public static final int COMPANY = 4;
+    public static final int TIME = 8;
+    public static final int RENTER = 16;
+    public static final int CAR_TYPE = 20;
+    public static final int START_DAY = 24;
+    public static final int END_DAY = 28;
+    public static final int PRICE = 32;
+    public static final int CAR = 40;
+    public static final int RESERVATION = 44;
+
+    // symbol record fields
+    public static final int SYMBOL_ID = 4;
+    public static final int SYMBOL_LENGTH = 8;
+    public static final int SYMBOL_NAME = 12;
+
+    private JournalFormat() {
+    }
+
+    /**
+     * @return the number of records taken by a symbol of the given length
+     */
+    public static int symbolRecords(int nameLength) {
+        return (SYMBOL_NAME + nameLength + RECORD_SIZE - 1) / RECORD_SIZE;
+    }
+}
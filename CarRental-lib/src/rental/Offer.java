@@ -0,0 +1,58 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * A car type that is available at a company for a period, with its price.
+ * Offers order by price, cheapest first.
+ */
+public class Offer implements Serializable, Comparable<Offer> {
+
+    private String rentalCompany;
+    private CarType carType;
+    private double price;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public Offer(String rentalCompany, CarType carType, double price) {
+        this.rentalCompany = rentalCompany;
+        this.carType = carType;
+        this.price = price;
+    }
+
+    public String getRentalCompany() {
+        return rentalCompany;
+    }
+
+    public CarType getCarType() {
+        return carType;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    // equal prices are ordered by company and car type, so results are stable
+    @Override
+    public int compareTo(Offer other) {
+        int c = Double.compare(price, other.price);
+        if (c == 0) {
+            c = rentalCompany.compareTo(other.rentalCompany);
+        }
+        if (c == 0) {
+            c = carType.getName().compareTo(other.carType.getName());
+        }
+        return c;
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return String.format("Offer from %s: %s for %.2f", getRentalCompany(), getCarType().getName(), getPrice());
+    }
+}
@@ -1,19 +1,20 @@
 package rental;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Date;
 import javax.persistence.Inheritance;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.ManyToOne;
-import javax.persistence.Temporal;
-import javax.persistence.TemporalType;
 
 @MappedSuperclass
-public class Quote implements Serializable {
-    @Temporal(TemporalType.DATE)
-    private Date startDate;
-    @Temporal(TemporalType.DATE)
-    private Date endDate;
+// serialized compactly, see Wire
+public class Quote implements Externalizable {
+    // the period in epoch days, dates only exist at the remote interfaces
+    private int startDay;
+    private int endDay;
     private String carRenter;
     private String rentalCompany;
     private String carType;
@@ -23,19 +24,35 @@ public class Quote implements Serializable {
      * CONSTRUCTOR *
      ***************/
 
+    // for deserialization
+    public Quote() {
+    }
+
     public Quote(String carRenter, Date start, Date end, String rentalCompany, String carType, double rentalPrice) {
+        this(carRenter, EpochDays.fromDate(start), EpochDays.fromDate(end), rentalCompany, carType, rentalPrice);
+    }
+
+    public Quote(String carRenter, int startDay, int endDay, String rentalCompany, String carType, double rentalPrice) {
         this.carRenter = carRenter;
-        this.startDate = start;
-        this.endDate = end;
+        this.startDay = startDay;
+        this.endDay = endDay;
         this.rentalCompany = rentalCompany;
         this.carType = carType;
         this.rentalPrice = rentalPrice;
     }
     public Date getStartDate() {
-        return startDate;
+        return EpochDays.toDate(startDay);
     }
     public Date getEndDate() {
-        return endDate;
+        return EpochDays.toDate(endDay);
+    }
+
+    public int getStartDay() {
+        return startDay;
+    }
+
+    public int getEndDay() {
+        return endDay;
     }
 
     public String getCarRenter() {
@@ -54,6 +71,30 @@ public class Quote implements Serializable {
 	return carType;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeString(out, carRenter);
+        Wire.writeString(out, rentalCompany);
+        Wire.writeString(out, carType);
+        Wire.writeDay(out, startDay);
+        Wire.writeDay(out, endDay);
+        out.writeDouble(rentalPrice);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        carRenter = Wire.readString(in);
+        rentalCompany = Wire.readString(in);
+        carType = Wire.readString(in);
+        startDay = Wire.readDay(in);
+        endDay = Wire.readDay(in);
+        rentalPrice = in.readDouble();
+    }
+
     /*************
      * TO STRING *
      *************/
@@ -70,12 +111,12 @@ public class Quote implements Serializable {
 	int result = 1;
 	result = prime * result + ((carRenter == null) ? 0 : carRenter.hashCode());
 	result = prime * result + ((carType == null) ? 0 : carType.hashCode());
-	result = prime * result + ((endDate == null) ? 0 : endDate.hashCode());
+	result = prime * result + endDay;
 	result = prime * result + ((rentalCompany == null) ? 0 : rentalCompany.hashCode());
 	long temp;
 	temp = Double.doubleToLongBits(rentalPrice);
 	result = prime * result + (int) (temp ^ (temp >>> 32));
-	result = prime * result + ((startDate == null) ? 0 : startDate.hashCode());
+	result = prime * result + startDay;
 	return result;
     }
 
@@ -98,10 +139,7 @@ public class Quote implements Serializable {
 		return false;
 	} else if (!carType.equals(other.carType))
             return false;
-	if (endDate == null) {
-            if (other.endDate != null)
-		return false;
-	} else if (!endDate.equals(other.endDate))
+	if (endDay != other.endDay)
             return false;
 	if (rentalCompany == null) {
             if (other.rentalCompany != null)
@@ -110,10 +148,7 @@ public class Quote implements Serializable {
             return false;
 	if (Double.doubleToLongBits(rentalPrice) != Double.doubleToLongBits(other.rentalPrice))
             return false;
-	if (startDate == null) {
-            if (other.startDate != null)
-		return false;
-	} else if (!startDate.equals(other.startDate))
+	if (startDay != other.startDay)
             return false;
 	return true;
     }
@@ -0,0 +1,46 @@
+package rental;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of one leg of a batch quote request: either the quote or the reason
+ * why no quote could be made.
+ */
+public class QuoteResult implements Serializable {
+
+    private Quote quote;
+    private String failure;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public QuoteResult(Quote quote) {
+        this.quote = quote;
+    }
+
+    public QuoteResult(String failure) {
+        this.failure = failure;
+    }
+
+    public boolean isSuccess() {
+        return quote != null;
+    }
+
+    public Quote getQuote() {
+        return quote;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return isSuccess() ? getQuote().toString() : "Quote failed: " + getFailure();
+    }
+}
@@ -1,10 +1,26 @@
 package rental;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 
+// carRenter and endDay are indexed, see orm.xml of CarRental-ejb
 @Entity
+@NamedQueries({
+    @NamedQuery(name = "Reservation.findByRenter",
+            query = "SELECT r FROM Reservation r WHERE r.carRenter = :renter ORDER BY r.id"),
+    @NamedQuery(name = "Reservation.findByRenterAfter",
+            query = "SELECT r FROM Reservation r WHERE r.carRenter = :renter AND r.id > :after ORDER BY r.id"),
+    @NamedQuery(name = "Reservation.countByRenter",
+            query = "SELECT COUNT(r) FROM Reservation r WHERE r.carRenter = :renter"),
+    @NamedQuery(name = "Reservation.endedBefore",
+            query = "SELECT r FROM Reservation r WHERE r.endDay < :horizon")
+})
 public class Reservation extends Quote {
 
     private int carId;
@@ -22,7 +38,7 @@ public class Reservation extends Quote {
     }
 
     public Reservation() {
-        super(null, null, null, null, null, 0); //NEVER USED
+        super(); //NEVER USED
     }
     
     /***************
@@ -30,7 +46,7 @@ public class Reservation extends Quote {
      ***************/
 
     public Reservation(Quote quote, int carId) {
-    	super(quote.getCarRenter(), quote.getStartDate(), quote.getEndDate(), 
+    	super(quote.getCarRenter(), quote.getStartDay(), quote.getEndDay(), 
     		quote.getRentalCompany(), quote.getCarType(), quote.getRentalPrice());
         this.carId = carId;
     }
@@ -46,6 +62,24 @@ public class Reservation extends Quote {
         this.carId = carId;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        super.writeExternal(out);
+        Wire.writeVarInt(out, id);
+        Wire.writeVarInt(out, carId);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        super.readExternal(in);
+        id = Wire.readVarInt(in);
+        carId = Wire.readVarInt(in);
+    }
+
     /*************
      * TO STRING *
      *************/
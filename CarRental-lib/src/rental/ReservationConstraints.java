@@ -1,14 +1,23 @@
 package rental;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Date;
 
-public class ReservationConstraints implements Serializable{
+// serialized compactly, see Wire
+public class ReservationConstraints implements Externalizable {
     
-    private Date startDate;
-    private Date endDate;
+    // the period in epoch days
+    private int startDay;
+    private int endDay;
     private String carType;
 	
+    // for deserialization
+    public ReservationConstraints() {
+    }
+
     /***************
      * CONSTRUCTOR *
      ***************/
@@ -20,19 +29,27 @@ public class ReservationConstraints implements Serializable{
     }
     
     public Date getStartDate() {
-	return startDate;
+	return EpochDays.toDate(startDay);
     }
     
     private void setStartDate(Date startDate) {
-	this.startDate = startDate;
+	this.startDay = EpochDays.fromDate(startDate);
     }
     
     public Date getEndDate() {
-	return endDate;
+	return EpochDays.toDate(endDay);
     }
     
     private void setEndDate(Date endDate) {
-	this.endDate = endDate;
+	this.endDay = EpochDays.fromDate(endDate);
+    }
+
+    public int getStartDay() {
+        return startDay;
+    }
+
+    public int getEndDay() {
+        return endDay;
     }
 	
     public String getCarType() {
@@ -43,6 +60,24 @@ public class ReservationConstraints implements Serializable{
 	this.carType = carType;
     }
     
+    /*****************
+     * SERIALIZATION *
+     *****************/
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Wire.writeString(out, carType);
+        Wire.writeDay(out, startDay);
+        Wire.writeDay(out, endDay);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+        carType = Wire.readString(in);
+        startDay = Wire.readDay(in);
+        endDay = Wire.readDay(in);
+    }
+
     /*************
      * TO STRING *
      *************/
@@ -57,9 +92,8 @@ public class ReservationConstraints implements Serializable{
     public int hashCode() {
 	final int prime = 31;
 	int result = 1;
-	result = prime * result + ((endDate == null) ? 0 : endDate.hashCode());
-	result = prime * result
-			+ ((startDate == null) ? 0 : startDate.hashCode());
+	result = prime * result + endDay;
+	result = prime * result + startDay;
 	result = prime * result + ((carType == null) ? 0 : carType.hashCode());
 	return result;
     }
@@ -73,15 +107,9 @@ public class ReservationConstraints implements Serializable{
 	if (getClass() != obj.getClass())
             return false;
 	ReservationConstraints other = (ReservationConstraints) obj;
-	if (endDate == null) {
-            if (other.endDate != null)
-		return false;
-	} else if (!endDate.equals(other.endDate))
+	if (endDay != other.endDay)
             return false;
-	if (startDate == null) {
-            if (other.startDate != null)
-		return false;
-	} else if (!startDate.equals(other.startDate))
+	if (startDay != other.startDay)
             return false;
 	if (carType == null) {
             if (other.carType != null)
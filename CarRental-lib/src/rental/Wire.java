@@ -0,0 +1,59 @@
+package rental;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Building blocks of the compact serialized form of the rental classes.
+ *
+ * Numbers are written as variable length integers, days as zigzag encoded
+ * ones.
+ * Strings are interned and written as objects, so the stream writes every
+ * distinct string once and refers back to it after that, and the reading
+ * side shares one instance per distinct string as well.
+ */
+final class Wire {
+
+    private Wire() {
+    }
+
+    static void writeString(ObjectOutput out, String value) throws IOException {
+        out.writeObject(value == null ? null : value.intern());
+    }
+
+    static String readString(ObjectInput in) throws IOException, ClassNotFoundException {
+        return (String) in.readObject();
+    }
+
+    // days after 1970 as even and before as odd numbers
+    static void writeDay(ObjectOutput out, int day) throws IOException {
+        writeVarInt(out, (day << 1) ^ (day >> 31));
+    }
+
+    static int readDay(ObjectInput in) throws IOException {
+        int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // 7 bits per byte, the high bit set on all but the last byte
+    static void writeVarInt(ObjectOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(ObjectInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
@@ -0,0 +1,74 @@
+package session;
+
+import java.io.Serializable;
+
+public class CacheStatistics implements Serializable {
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    private int size;
+    private int maxSize;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public CacheStatistics(long hits, long misses, long evictions, long invalidations, int size, int maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the lookups, evictions and invalidations since the earlier
+     * statistics of the same cache, with the current size
+     */
+    public CacheStatistics since(CacheStatistics earlier) {
+        return new CacheStatistics(hits - earlier.hits, misses - earlier.misses, evictions - earlier.evictions,
+                invalidations - earlier.invalidations, size, maxSize);
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return String.format("Cache statistics [hits: %d, misses: %d, hit ratio: %.2f, evictions: %d, invalidations: %d, size: %d/%d]",
+                getHits(), getMisses(), getHitRatio(), getEvictions(), getInvalidations(), getSize(), getMaxSize());
+    }
+}
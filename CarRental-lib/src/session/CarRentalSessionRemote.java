@@ -5,7 +5,11 @@ import java.util.List;
 import java.util.Set;
 import javax.ejb.Remote;
 import rental.CarType;
+import rental.CarTypeFilter;
+import rental.Offer;
 import rental.Quote;
+import rental.QuoteRequest;
+import rental.QuoteResult;
 import rental.Reservation;
 import rental.ReservationConstraints;
 import rental.ReservationException;
@@ -14,15 +18,32 @@ import rental.ReservationException;
 public interface CarRentalSessionRemote {
     
     public void setRenterName(String name);
+
+    public void setHoldQuotes(boolean holdQuotes);
     
     public Set<String> getAllRentalCompanies();
     
-    public List<CarType> getAvailableCarTypes(Date start, Date end);
+    // periods that are reversed or before the archive horizon are refused
+    public List<CarType> getAvailableCarTypes(Date start, Date end) throws ReservationException;
+
+    public List<Quote> getAvailableQuotes(Date start, Date end) throws ReservationException;
+
+    /**
+     * The cheapest offers of all companies for the period, at most limit of
+     * them, cheapest first.
+     */
+    public List<Offer> getCheapestOffers(Date start, Date end, CarTypeFilter filter, int limit)
+            throws ReservationException;
     
     public Quote createQuote(String company, ReservationConstraints constraints) throws ReservationException;
     
+    public List<QuoteResult> createQuotes(List<QuoteRequest> requests);
+    
     public List<Quote> getCurrentQuotes();
     
     public List<Reservation> confirmQuotes() throws ReservationException;
+
+    // ends the session, releasing what it holds
+    public void remove();
     
 }
\ No newline at end of file
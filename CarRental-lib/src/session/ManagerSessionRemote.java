@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Set;
 import javax.ejb.Remote;
 import rental.CarType;
+import rental.FleetRow;
+import rental.Reservation;
 
 @Remote
 public interface ManagerSessionRemote {
@@ -18,15 +20,33 @@ public interface ManagerSessionRemote {
       
     public int getNumberOfReservationsBy(String renter);
 
+    // archived reservations are counted, but not listed
+    public List<Reservation> getReservationsBy(String renter);
+
+    /**
+     * A page of the reservations of the renter, see ReservationPage. Pass a
+     * null continuation for the first page. Archived reservations are not
+     * listed.
+     */
+    public ReservationPage getReservationsBy(String renter, String continuation);
+
     public void addCarRentalCompany(String name);
 
     public void addCar(String crcName, int carTypeId);
 
     public int addCarType(String crcName ,String name, int nbOfSeats, float trunkSpace, double rentalPricePerDay, boolean smokingAllowed);
 
+    public int loadFleet(String crcName, List<FleetRow> fleet);
+
     public List<String> getAllCarRentalCompanies();
 
     public String getMostPopularCarRentalCompany();
 
     public CarType getMostPopularCarTypeIn(String carRentalCompanyName);
+
+    public CacheStatistics getAvailabilityCacheStatistics();
+
+    public CacheStatistics getCatalogCacheStatistics();
+
+    public List<OperationStatistics> getOperationStatistics();
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package session;
+
+import java.io.Serializable;
+
+public class OperationStatistics implements Serializable {
+
+    private String operation;
+    private long calls;
+    private long errors;
+    private long totalNanos;
+    // histogram[b] counts the calls that took less than 2^b microseconds,
+    // and at least 2^(b-1)
+    private long[] histogram;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public OperationStatistics(String operation, long calls, long errors, long totalNanos, long[] histogram) {
+        this.operation = operation;
+        this.calls = calls;
+        this.errors = errors;
+        this.totalNanos = totalNanos;
+        this.histogram = histogram;
+    }
+
+    /**
+     * @return bean and method, e.g. CarRentalSession.createQuote(String,ReservationConstraints)
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return the calls that threw an exception, including application
+     * exceptions such as ReservationException
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getMeanMillis() {
+        return calls == 0 ? 0 : totalNanos / 1e6 / calls;
+    }
+
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * @param fraction e.g. 0.99 for the 99th percentile
+     * @return an upper bound of the percentile, which is at most twice the
+     * exact value
+     */
+    public double getPercentileMillis(double fraction) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int b = 0; b < histogram.length; b++) {
+            seen += histogram[b];
+            if (seen >= rank && seen > 0) {
+                return (1L << b) / 1000D;
+            }
+        }
+        return 0;
+    }
+
+    /*************
+     * TO STRING *
+     *************/
+
+    @Override
+    public String toString() {
+        return String.format("%s [calls: %d, errors: %d, mean: %.3f ms, p50: %.3f ms, p99: %.3f ms, p99.9: %.3f ms]",
+                getOperation(), getCalls(), getErrors(), getMeanMillis(),
+                getPercentileMillis(0.5), getPercentileMillis(0.99), getPercentileMillis(0.999));
+    }
+}
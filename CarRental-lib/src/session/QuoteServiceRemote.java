@@ -0,0 +1,23 @@
+package session;
+
+import java.util.List;
+import javax.ejb.Remote;
+import rental.Quote;
+import rental.Reservation;
+import rental.ReservationConstraints;
+import rental.ReservationException;
+
+/**
+ * Quoting and booking without a session. A quote is handed out as a signed
+ * token that carries all of its fields, the client keeps the tokens and
+ * confirms them together, possibly on another server.
+ */
+@Remote
+public interface QuoteServiceRemote {
+
+    public String createQuote(String renter, String company, ReservationConstraints constraints) throws ReservationException;
+
+    public Quote getQuote(String token) throws ReservationException;
+
+    public List<Reservation> confirmQuotes(List<String> tokens) throws ReservationException;
+}
@@ -0,0 +1,36 @@
+package session;
+
+import java.io.Serializable;
+import java.util.List;
+import rental.Reservation;
+
+/**
+ * One page of a reservation listing, in order of reservation id. Pass the
+ * continuation to get the next page; it is null on the last page.
+ */
+public class ReservationPage implements Serializable {
+
+    private List<Reservation> reservations;
+    private String continuation;
+
+    /***************
+     * CONSTRUCTOR *
+     ***************/
+
+    public ReservationPage(List<Reservation> reservations, String continuation) {
+        this.reservations = reservations;
+        this.continuation = continuation;
+    }
+
+    public List<Reservation> getReservations() {
+        return reservations;
+    }
+
+    public String getContinuation() {
+        return continuation;
+    }
+
+    public boolean isLast() {
+        return continuation == null;
+    }
+}